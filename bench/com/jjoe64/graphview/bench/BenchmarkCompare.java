@@ -0,0 +1,89 @@
+package com.jjoe64.graphview.bench;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two result files of a {@link Harness} suite, for example of the
+ * parent commit and of a change. Both CSV and JSON lines are accepted. Prints
+ * one CSV line per benchmark and size found in both files with the ratio
+ * new / old of ns_per_op, and exits with status 1 if a ratio exceeds the
+ * threshold.
+ *
+ * <pre>
+ * java -cp bin/bench com.jjoe64.graphview.bench.BenchmarkCompare old.csv new.csv [threshold, default 1.10]
+ * </pre>
+ */
+public class BenchmarkCompare {
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: BenchmarkCompare old new [threshold]");
+			System.exit(2);
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 1.10;
+		Map<String, Double> before = read(args[0]);
+		Map<String, Double> after = read(args[1]);
+
+		boolean regression = false;
+		System.out.println("benchmark,size,old_ns_per_op,new_ns_per_op,ratio,regression");
+		for (Map.Entry<String, Double> entry : after.entrySet()) {
+			Double old = before.get(entry.getKey());
+			if (old == null) {
+				continue;
+			}
+			double ratio = old > 0 ? entry.getValue() / old : 1;
+			boolean slower = ratio > threshold;
+			regression |= slower;
+			System.out.println(entry.getKey() + "," + old + "," + entry.getValue() + "," + Math.round(ratio * 1000) / 1000.0 + "," + slower);
+		}
+		if (regression) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @return ns_per_op by "suite/benchmark,size", in file order
+	 */
+	private static Map<String, Double> read(String file) throws IOException {
+		Map<String, Double> results = new LinkedHashMap<String, Double>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.startsWith("{")) {
+					results.put(jsonString(line, "suite") + "/" + jsonString(line, "benchmark") + "," + jsonValue(line, "size"),
+							Double.valueOf(jsonValue(line, "ns_per_op")));
+				} else if (line.length() > 0 && !line.startsWith("suite,")) {
+					String[] columns = line.split(",");
+					if (columns.length >= 4) {
+						results.put(columns[0] + "/" + columns[1] + "," + columns[2], Double.valueOf(columns[3]));
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return results;
+	}
+
+	/**
+	 * reads a number of the flat objects written by the harness
+	 */
+	private static String jsonValue(String line, String key) {
+		int start = line.indexOf("\"" + key + "\":") + key.length() + 3;
+		int end = start;
+		while (end < line.length() && line.charAt(end) != ',' && line.charAt(end) != '}') {
+			end++;
+		}
+		return line.substring(start, end);
+	}
+
+	private static String jsonString(String line, String key) {
+		String value = jsonValue(line, key);
+		return value.substring(1, value.length() - 1);
+	}
+}
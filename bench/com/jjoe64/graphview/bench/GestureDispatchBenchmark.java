@@ -0,0 +1,176 @@
+package com.jjoe64.graphview.bench;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jjoe64.graphview.core.Viewport;
+
+/**
+ * Measures the cost per touch event of the scale gesture dispatch and of the
+ * viewport updates:
+ * <ul>
+ * <li>dispatch_reflection: onTouchEvent, isInProgress and getScaleFactor
+ * through Method.invoke, the way the compatible ScaleGestureDetector used to
+ * call the platform detector</li>
+ * <li>dispatch_interface: the same calls through the interface it binds to
+ * once</li>
+ * <li>viewport_per_event: one zoom and one scroll of the viewport per event,
+ * size is the number of events per frame</li>
+ * <li>viewport_per_frame: the events of a frame folded into one resize and
+ * one scroll, as GraphView does</li>
+ * </ul>
+ *
+ * The platform detector needs Android, it is replaced by a plain object with
+ * the same methods, so only the dispatch is measured:
+ *
+ * <pre>
+ * java -cp bin/classes:bin/bench com.jjoe64.graphview.bench.GestureDispatchBenchmark [--format=csv|json] [--filter=name] [events per frame...]
+ * </pre>
+ */
+public class GestureDispatchBenchmark {
+	private static final int[] EVENTS_PER_FRAME = { 1, 4, 16 };
+	/** events per call */
+	private static final int EVENTS = 1024;
+
+	public interface Detector {
+		boolean onTouchEvent(Object event);
+		boolean isInProgress();
+		float getScaleFactor();
+	}
+
+	/** stands in for the platform detector */
+	public static final class FakeDetector implements Detector {
+		private float mFactor = 1;
+		private boolean mInProgress;
+
+		public boolean onTouchEvent(Object event) {
+			mInProgress = !mInProgress;
+			mFactor = mInProgress ? 1.01f : 0.99f;
+			return true;
+		}
+
+		public boolean isInProgress() {
+			return mInProgress;
+		}
+
+		public float getScaleFactor() {
+			return mFactor;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> rest = new ArrayList<String>();
+		Harness harness = Harness.fromArgs("gesture", args, rest);
+		int[] sizes = EVENTS_PER_FRAME;
+		if (!rest.isEmpty()) {
+			sizes = new int[rest.size()];
+			for (int i = 0; i < sizes.length; i++) {
+				sizes[i] = Integer.parseInt(rest.get(i));
+			}
+		}
+
+		final Object event = new Object();
+		final Detector detector = new FakeDetector();
+		final Method onTouchEvent = FakeDetector.class.getMethod("onTouchEvent", Object.class);
+		final Method isInProgress = FakeDetector.class.getMethod("isInProgress");
+		final Method getScaleFactor = FakeDetector.class.getMethod("getScaleFactor");
+
+		harness.run("dispatch_reflection", 1, new EventCase() {
+			@Override
+			protected double call() {
+				double sum = 0;
+				try {
+					for (int i = 0; i < EVENTS; i++) {
+						onTouchEvent.invoke(detector, event);
+						if ((Boolean) isInProgress.invoke(detector)) {
+							sum += (Float) getScaleFactor.invoke(detector);
+						}
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				return sum;
+			}
+		});
+		harness.run("dispatch_interface", 1, new EventCase() {
+			@Override
+			protected double call() {
+				double sum = 0;
+				for (int i = 0; i < EVENTS; i++) {
+					detector.onTouchEvent(event);
+					if (detector.isInProgress()) {
+						sum += detector.getScaleFactor();
+					}
+				}
+				return sum;
+			}
+		});
+
+		for (int size : sizes) {
+			final int eventsPerFrame = Math.max(size, 1);
+			harness.run("viewport_per_event", eventsPerFrame, new ViewportCase() {
+				@Override
+				protected double call() {
+					for (int i = 0; i < EVENTS; i++) {
+						int n = next++;
+						viewport.zoom(factor(n), MIN_X, MAX_X);
+						viewport.scroll(delta(n), MIN_X, MAX_X);
+					}
+					return viewport.getStart();
+				}
+			});
+			harness.run("viewport_per_frame", eventsPerFrame, new ViewportCase() {
+				@Override
+				protected double call() {
+					double sizeFactor = 1;
+					double scroll = 0;
+					for (int i = 0; i < EVENTS; i++) {
+						int n = next++;
+						sizeFactor *= 2 - factor(n);
+						scroll += delta(n);
+						if ((i + 1) % eventsPerFrame == 0) {
+							viewport.resize(sizeFactor, MIN_X, MAX_X);
+							viewport.scroll(scroll, MIN_X, MAX_X);
+							sizeFactor = 1;
+							scroll = 0;
+						}
+					}
+					return viewport.getStart();
+				}
+			});
+		}
+	}
+
+	private static abstract class EventCase extends Harness.Case {
+		@Override
+		protected int opsPerCall() {
+			return EVENTS;
+		}
+	}
+
+	private static abstract class ViewportCase extends EventCase {
+		static final double MIN_X = 0;
+		static final double MAX_X = 1e6;
+		final Viewport viewport = new Viewport();
+		/** number of the next event */
+		int next;
+
+		@Override
+		protected void setUp(int size) {
+			viewport.set(MAX_X / 2, MAX_X / 10);
+		}
+
+		/**
+		 * zooms in for 4096 events, then out, so the viewport size stays in
+		 * range and the folded factors of a frame are not 1
+		 */
+		static double factor(int n) {
+			return (n & 4096) == 0 ? 1.0001 : 1 / 1.0001;
+		}
+
+		static double delta(int n) {
+			return (n & 4096) == 0 ? 1 : -1;
+		}
+	}
+}
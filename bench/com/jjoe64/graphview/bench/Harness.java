@@ -0,0 +1,189 @@
+package com.jjoe64.graphview.bench;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal JMH-style harness for the benchmark suites. Every case is warmed up
+ * first, then measured in several timed iterations. The number of calls per
+ * iteration is calibrated so an iteration takes at least
+ * {@link #setIterationMillis(long) iterationMillis}. One result line is
+ * printed per case and size, as CSV or as one JSON object per line, so the
+ * output of two commits can be compared with {@link BenchmarkCompare}.
+ *
+ * Columns: suite, benchmark, size, ns_per_op (median of the iterations),
+ * ns_per_op_min, ns_per_op_max, iterations, ops (operations measured in
+ * total).
+ */
+public final class Harness {
+	public enum Format {
+		CSV, JSON
+	}
+
+	/**
+	 * one benchmark at one size. {@link #call()} performs
+	 * {@link #opsPerCall()} operations.
+	 */
+	public static abstract class Case {
+		/** called once before warm up, not measured */
+		protected void setUp(int size) {
+		}
+
+		/** called after the measurement, releases the data */
+		protected void tearDown() {
+		}
+
+		protected int opsPerCall() {
+			return 1;
+		}
+
+		/**
+		 * @return any value derived from the work, it is consumed so the JIT
+		 *         cannot drop the work
+		 */
+		protected abstract double call();
+	}
+
+	private final String mSuite;
+	private final Format mFormat;
+	private final PrintStream mOut;
+	private int mWarmupIterations = 3;
+	private int mIterations = 5;
+	private long mIterationMillis = 200;
+	private String mFilter;
+	private boolean mHeaderPrinted;
+	private double mSink;
+
+	public Harness(String suite, Format format, PrintStream out) {
+		mSuite = suite;
+		mFormat = format;
+		mOut = out;
+	}
+
+	/**
+	 * reads --format=csv|json, --warmup=n, --iterations=n, --millis=n and
+	 * --filter=substring
+	 *
+	 * @param rest
+	 *            receives the arguments that were not consumed
+	 */
+	public static Harness fromArgs(String suite, String[] args, List<String> rest) {
+		Format format = Format.CSV;
+		Integer warmup = null, iterations = null;
+		Long millis = null;
+		String filter = null;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.startsWith("--format=")) {
+				format = Format.valueOf(arg.substring(9).toUpperCase());
+			} else if (arg.startsWith("--warmup=")) {
+				warmup = Integer.valueOf(arg.substring(9));
+			} else if (arg.startsWith("--iterations=")) {
+				iterations = Integer.valueOf(arg.substring(13));
+			} else if (arg.startsWith("--millis=")) {
+				millis = Long.valueOf(arg.substring(9));
+			} else if (arg.startsWith("--filter=")) {
+				filter = arg.substring(9);
+			} else {
+				rest.add(arg);
+			}
+		}
+		Harness harness = new Harness(suite, format, System.out);
+		if (warmup != null) {
+			harness.setWarmupIterations(warmup);
+		}
+		if (iterations != null) {
+			harness.setIterations(iterations);
+		}
+		if (millis != null) {
+			harness.setIterationMillis(millis);
+		}
+		harness.setFilter(filter);
+		return harness;
+	}
+
+	public void setWarmupIterations(int warmupIterations) {
+		mWarmupIterations = warmupIterations;
+	}
+
+	public void setIterations(int iterations) {
+		mIterations = Math.max(iterations, 1);
+	}
+
+	public void setIterationMillis(long iterationMillis) {
+		mIterationMillis = iterationMillis;
+	}
+
+	/**
+	 * @param filter
+	 *            only benchmarks whose name contains this are run, null runs
+	 *            all
+	 */
+	public void setFilter(String filter) {
+		mFilter = filter;
+	}
+
+	public void run(String name, int size, Case c) {
+		if (mFilter != null && !name.contains(mFilter)) {
+			return;
+		}
+		c.setUp(size);
+		try {
+			long target = mIterationMillis * 1000000L;
+			// calibrate: double the calls until one iteration is long enough
+			long calls = 1;
+			while (true) {
+				long elapsed = iteration(c, calls);
+				if (elapsed >= target || calls >= 1L << 40) {
+					break;
+				}
+				calls = elapsed > 0 ? Math.max(2 * calls, calls * target / elapsed) : 2 * calls;
+			}
+			for (int i = 0; i < mWarmupIterations; i++) {
+				iteration(c, calls);
+			}
+			double ops = (double) calls * c.opsPerCall();
+			double[] nsPerOp = new double[mIterations];
+			for (int i = 0; i < mIterations; i++) {
+				nsPerOp[i] = iteration(c, calls) / ops;
+			}
+			Arrays.sort(nsPerOp);
+			print(name, size, nsPerOp[nsPerOp.length / 2], nsPerOp[0], nsPerOp[nsPerOp.length - 1], (long) ops * mIterations);
+		} finally {
+			c.tearDown();
+		}
+	}
+
+	private long iteration(Case c, long calls) {
+		double sink = 0;
+		long start = System.nanoTime();
+		for (long i = 0; i < calls; i++) {
+			sink += c.call();
+		}
+		long elapsed = System.nanoTime() - start;
+		mSink += sink;
+		return elapsed;
+	}
+
+	private void print(String name, int size, double median, double min, double max, long ops) {
+		if (mFormat == Format.JSON) {
+			mOut.println("{\"suite\":\"" + mSuite + "\",\"benchmark\":\"" + name + "\",\"size\":" + size + ",\"ns_per_op\":" + format(median) + ",\"ns_per_op_min\":"
+					+ format(min) + ",\"ns_per_op_max\":" + format(max) + ",\"iterations\":" + mIterations + ",\"ops\":" + ops + ",\"java\":\""
+					+ System.getProperty("java.version") + "\"}");
+		} else {
+			if (!mHeaderPrinted) {
+				mOut.println("suite,benchmark,size,ns_per_op,ns_per_op_min,ns_per_op_max,iterations,ops");
+				mHeaderPrinted = true;
+			}
+			mOut.println(mSuite + "," + name + "," + size + "," + format(median) + "," + format(min) + "," + format(max) + "," + mIterations + "," + ops);
+		}
+		if (mSink == 42) {
+			mOut.println();
+		}
+	}
+
+	private static String format(double value) {
+		return String.valueOf(Math.round(value * 1000) / 1000.0);
+	}
+}
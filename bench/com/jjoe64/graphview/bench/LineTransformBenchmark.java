@@ -0,0 +1,131 @@
+package com.jjoe64.graphview.bench;
+
+import com.jjoe64.graphview.GraphViewSeries;
+import com.jjoe64.graphview.LineSegmentBuffer;
+
+/**
+ * Microbenchmark of the point transform only, at 1k, 10k and 100k points.
+ * The per_point variant maps every point on its own through a 2 element
+ * array and records it into a new growing array per frame, the way the PATH
+ * backend of LineGraphView feeds its Path. The batched variant fills one
+ * reused LineSegmentBuffer with points relative to the viewport, transforms
+ * them in a single pass and expands them into drawLines segments, the way
+ * the LINES backend does.
+ *
+ * This does not run LineGraphView: Canvas, Path and Matrix are native on
+ * Android, so a plain affine transform stands in for Matrix.mapPoints and a
+ * float array for the Path. Path building, drawing and rasterization are not
+ * measured. Prints one CSV line per variant and size.
+ *
+ * <pre>
+ * java -cp bin/classes:bin/bench com.jjoe64.graphview.bench.LineTransformBenchmark [frames]
+ * </pre>
+ */
+public class LineTransformBenchmark {
+	private static final int[] SIZES = { 1000, 10000, 100000 };
+	private static final float WIDTH = 1000;
+	private static final float HEIGHT = 600;
+
+	private static float sink;
+
+	/** stand-in for a Path: grows while points are added */
+	private static final class RecordedPath {
+		float[] ops = new float[16];
+		int length;
+
+		void add(float x, float y) {
+			if (length + 2 > ops.length) {
+				float[] grown = new float[ops.length * 2];
+				System.arraycopy(ops, 0, grown, 0, length);
+				ops = grown;
+			}
+			ops[length++] = x;
+			ops[length++] = y;
+		}
+	}
+
+	/** stand-in for Matrix: scale, then translate */
+	private static final class Affine {
+		float sx, sy, tx, ty;
+
+		void map(float[] points, int count) {
+			for (int i = 0; i < 2 * count; i += 2) {
+				points[i] = points[i] * sx + tx;
+				points[i + 1] = points[i + 1] * sy + ty;
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+		System.out.println("variant,points,ns_per_frame");
+		for (int size : SIZES) {
+			GraphViewSeries series = new GraphViewSeries();
+			for (int i = 0; i < size; i++) {
+				series.add(i, Math.sin(i * 0.01));
+			}
+			// warm up the JIT, then measure
+			perPoint(series, frames);
+			System.out.println("per_point," + size + "," + perPoint(series, frames));
+			batched(series, frames);
+			System.out.println("batched," + size + "," + batched(series, frames));
+		}
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+
+	private static long perPoint(GraphViewSeries series, int frames) {
+		int count = series.size();
+		double minX = series.getMinX();
+		double minY = series.getMinY();
+		Affine affine = affine(series);
+		affine.tx -= (float) minX * affine.sx;
+		affine.ty -= (float) minY * affine.sy;
+		float[] point = new float[2];
+		long start = System.nanoTime();
+		for (int frame = 0; frame < frames; frame++) {
+			RecordedPath path = new RecordedPath();
+			RecordedPath circles = new RecordedPath();
+			for (int i = 0; i < count; i++) {
+				point[0] = (float) series.getX(i);
+				point[1] = (float) series.getY(i);
+				affine.map(point, 1);
+				path.add(point[0], point[1]);
+				circles.add(point[0], point[1]);
+			}
+			sink += path.ops[path.length - 1] + circles.ops[0];
+		}
+		return (System.nanoTime() - start) / frames;
+	}
+
+	private static long batched(GraphViewSeries series, int frames) {
+		int count = series.size();
+		double minX = series.getMinX();
+		double minY = series.getMinY();
+		Affine affine = affine(series);
+		LineSegmentBuffer buffer = new LineSegmentBuffer();
+		long start = System.nanoTime();
+		for (int frame = 0; frame < frames; frame++) {
+			float[] points = buffer.ensurePoints(count);
+			for (int i = 0; i < count; i++) {
+				points[2 * i] = (float) (series.getX(i) - minX);
+				points[2 * i + 1] = (float) (series.getY(i) - minY);
+			}
+			affine.map(points, count);
+			int length = buffer.buildSegments(count);
+			sink += buffer.getSegments()[length - 1];
+		}
+		return (System.nanoTime() - start) / frames;
+	}
+
+	private static Affine affine(GraphViewSeries series) {
+		Affine affine = new Affine();
+		affine.sx = (float) (WIDTH / (series.getMaxX() - series.getMinX()));
+		affine.sy = (float) (-HEIGHT / (series.getMaxY() - series.getMinY()));
+		affine.tx = 0;
+		affine.ty = HEIGHT;
+		return affine;
+	}
+}
@@ -0,0 +1,42 @@
+package com.jjoe64.graphview.bench;
+
+import com.jjoe64.graphview.GraphViewSeries;
+
+/**
+ * Measures the throughput of {@link GraphViewSeries#add(double, double)} while
+ * the series grows. Prints one CSV line per power of two: the series size
+ * reached and the appends per second within that window. A flat throughput
+ * column means appending is O(1) amortized.
+ *
+ * Runs on a plain JVM, no Android classes needed:
+ *
+ * <pre>
+ * java -cp bin/classes:bin/bench com.jjoe64.graphview.bench.SeriesAppendBenchmark [maxPoints]
+ * </pre>
+ */
+public class SeriesAppendBenchmark {
+	public static void main(String[] args) {
+		int maxPoints = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 22;
+
+		// warm up the JIT
+		for (int run = 0; run < 3; run++) {
+			GraphViewSeries series = new GraphViewSeries();
+			for (int i = 0; i < 1 << 18; i++) {
+				series.add(i, Math.sin(i * 0.01));
+			}
+		}
+
+		System.out.println("size,appends_per_sec");
+		GraphViewSeries series = new GraphViewSeries();
+		int i = 0;
+		for (int window = 1 << 10; window <= maxPoints; window <<= 1) {
+			int appended = window - i;
+			long start = System.nanoTime();
+			for (; i < window; i++) {
+				series.add(i, Math.sin(i * 0.01));
+			}
+			long elapsed = System.nanoTime() - start;
+			System.out.println(series.size() + "," + (long) (appended * 1e9 / Math.max(elapsed, 1)));
+		}
+	}
+}
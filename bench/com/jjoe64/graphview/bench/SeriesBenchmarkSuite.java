@@ -0,0 +1,221 @@
+package com.jjoe64.graphview.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.jjoe64.graphview.GraphViewSeries;
+import com.jjoe64.graphview.GraphViewSeries.GraphViewData;
+
+/**
+ * Benchmarks the series and viewport hot paths at series sizes from 1e3 to
+ * 1e7:
+ * <ul>
+ * <li>construct_sorted / construct_shuffled: the GraphViewSeries constructor,
+ * which sorts its input, per data point</li>
+ * <li>add: {@link GraphViewSeries#add(double, double)} per point, growing an
+ * empty series to the size</li>
+ * <li>nearest: {@link GraphViewSeries#getNearestValue(double)}</li>
+ * <li>slice_find_range: viewport slicing as GraphView does it, two binary
+ * searches over the x column</li>
+ * <li>slice_list_search: the same with Collections.binarySearch over
+ * {@link GraphViewSeries#getValues()}, the way GraphView used to slice</li>
+ * <li>bounds: getMinX, getMaxX, getMinY and getMaxY of the whole series</li>
+ * <li>viewport_min_max_y: {@link GraphViewSeries#getMinMaxY(int, int, double[])}
+ * over a viewport of 10% of the data</li>
+ * </ul>
+ *
+ * The largest size needs about 2 GB of heap for the construction cases:
+ *
+ * <pre>
+ * java -Xmx2g -cp bin/classes:bin/bench com.jjoe64.graphview.bench.SeriesBenchmarkSuite [--format=csv|json] [--filter=name] [sizes...] > results.csv
+ * </pre>
+ */
+public class SeriesBenchmarkSuite {
+	private static final int[] SIZES = { 1000, 10000, 100000, 1000000, 10000000 };
+	/** number of lookups per call, cycling through precomputed queries */
+	private static final int QUERIES = 1024;
+
+	public static void main(String[] args) {
+		List<String> rest = new ArrayList<String>();
+		Harness harness = Harness.fromArgs("series", args, rest);
+		int[] sizes = SIZES;
+		if (!rest.isEmpty()) {
+			sizes = new int[rest.size()];
+			for (int i = 0; i < sizes.length; i++) {
+				sizes[i] = (int) Double.parseDouble(rest.get(i));
+			}
+		}
+
+		for (int size : sizes) {
+			harness.run("construct_sorted", size, new ConstructCase(false));
+			harness.run("construct_shuffled", size, new ConstructCase(true));
+			harness.run("add", size, new AddCase());
+			harness.run("nearest", size, new LookupCase() {
+				@Override
+				protected double call() {
+					double sum = 0;
+					for (int i = 0; i < QUERIES; i++) {
+						sum += series.getNearestValue(queries[i]).valueY;
+					}
+					return sum;
+				}
+			});
+			harness.run("slice_find_range", size, new LookupCase() {
+				private final int[] range = new int[2];
+
+				@Override
+				protected double call() {
+					double sum = 0;
+					for (int i = 0; i < QUERIES; i++) {
+						series.findRange(queries[i], viewportSize, range);
+						sum += range[1] - range[0];
+					}
+					return sum;
+				}
+			});
+			harness.run("slice_list_search", size, new LookupCase() {
+				@Override
+				protected double call() {
+					List<GraphViewData> values = series.getValues();
+					double sum = 0;
+					for (int i = 0; i < QUERIES; i++) {
+						int start = Collections.binarySearch(values, new GraphViewData(queries[i], 0));
+						int end = Collections.binarySearch(values, new GraphViewData(queries[i] + viewportSize, 0));
+						sum += Math.abs(end) - Math.abs(start);
+					}
+					return sum;
+				}
+			});
+			harness.run("bounds", size, new LookupCase() {
+				@Override
+				protected int opsPerCall() {
+					return 1;
+				}
+
+				@Override
+				protected double call() {
+					return series.getMinX() + series.getMaxX() + series.getMinY() + series.getMaxY();
+				}
+			});
+			harness.run("viewport_min_max_y", size, new LookupCase() {
+				private final double[] result = new double[2];
+
+				@Override
+				protected double call() {
+					int length = Math.max(series.size() / 10, 1);
+					double sum = 0;
+					for (int i = 0; i < QUERIES; i++) {
+						int start = (int) queries[i];
+						series.getMinMaxY(start, Math.min(start + length, series.size()), result);
+						sum += result[1] - result[0];
+					}
+					return sum;
+				}
+			});
+		}
+	}
+
+	private static GraphViewSeries createSeries(int size) {
+		GraphViewSeries series = new GraphViewSeries();
+		double[] xs = new double[Math.min(size, 1 << 16)];
+		double[] ys = new double[xs.length];
+		for (int i = 0; i < size; i += xs.length) {
+			int len = Math.min(xs.length, size - i);
+			for (int j = 0; j < len; j++) {
+				xs[j] = i + j;
+				ys[j] = Math.sin((i + j) * 0.01);
+			}
+			series.addAll(xs, ys, 0, len);
+		}
+		return series;
+	}
+
+	private static final class ConstructCase extends Harness.Case {
+		private final boolean shuffled;
+		private List<GraphViewData> input;
+
+		ConstructCase(boolean shuffled) {
+			this.shuffled = shuffled;
+		}
+
+		@Override
+		protected void setUp(int size) {
+			input = new ArrayList<GraphViewData>(size);
+			for (int i = 0; i < size; i++) {
+				input.add(new GraphViewData(i, Math.sin(i * 0.01)));
+			}
+			if (shuffled) {
+				Collections.shuffle(input, new Random(42));
+			}
+		}
+
+		@Override
+		protected void tearDown() {
+			input = null;
+		}
+
+		@Override
+		protected int opsPerCall() {
+			return input.size();
+		}
+
+		@Override
+		protected double call() {
+			return new GraphViewSeries(input).getMaxX();
+		}
+	}
+
+	private static final class AddCase extends Harness.Case {
+		private int size;
+
+		@Override
+		protected void setUp(int size) {
+			this.size = size;
+		}
+
+		@Override
+		protected int opsPerCall() {
+			return size;
+		}
+
+		@Override
+		protected double call() {
+			GraphViewSeries series = new GraphViewSeries();
+			for (int i = 0; i < size; i++) {
+				series.add(i, i & 0xff);
+			}
+			return series.getMaxY();
+		}
+	}
+
+	/**
+	 * a series of the size and random x positions inside it
+	 */
+	private static abstract class LookupCase extends Harness.Case {
+		GraphViewSeries series;
+		final double[] queries = new double[QUERIES];
+		double viewportSize;
+
+		@Override
+		protected void setUp(int size) {
+			series = createSeries(size);
+			viewportSize = Math.max(size / 10, 1);
+			Random random = new Random(42);
+			for (int i = 0; i < QUERIES; i++) {
+				queries[i] = random.nextInt(size);
+			}
+		}
+
+		@Override
+		protected void tearDown() {
+			series = null;
+		}
+
+		@Override
+		protected int opsPerCall() {
+			return QUERIES;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.jjoe64.graphview.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import com.jjoe64.graphview.GraphViewSeries;
+import com.jjoe64.graphview.GraphViewSeries.GraphViewData;
+
+/**
+ * Compares the ways to get data into a {@link GraphViewSeries}: one
+ * GraphViewData object per point, batches of primitive arrays, and bulk
+ * ingestion from direct little-endian ByteBuffers in interleaved and split
+ * column layout. Prints one CSV line per method with the points per second.
+ *
+ * <pre>
+ * java -cp bin/classes:bin/bench com.jjoe64.graphview.bench.SeriesIngestBenchmark [points] [packetSize]
+ * </pre>
+ */
+public class SeriesIngestBenchmark {
+	private static final int RUNS = 5;
+
+	private interface Method {
+		String name();
+
+		GraphViewSeries run();
+	}
+
+	public static void main(String[] args) {
+		final int points = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 21;
+		final int packet = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+		final double[] xs = new double[points];
+		final double[] ys = new double[points];
+		final ByteBuffer interleaved = ByteBuffer.allocateDirect(16 * points).order(ByteOrder.LITTLE_ENDIAN);
+		final ByteBuffer xBytes = ByteBuffer.allocateDirect(8 * points).order(ByteOrder.LITTLE_ENDIAN);
+		final ByteBuffer yBytes = ByteBuffer.allocateDirect(8 * points).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < points; i++) {
+			xs[i] = i;
+			ys[i] = Math.sin(i * 0.01);
+			interleaved.putDouble(xs[i]).putDouble(ys[i]);
+			xBytes.putDouble(xs[i]);
+			yBytes.putDouble(ys[i]);
+		}
+		interleaved.clear();
+		xBytes.clear();
+		yBytes.clear();
+
+		Method[] methods = new Method[] {
+			new Method() {
+				public String name() {
+					return "add_object";
+				}
+
+				public GraphViewSeries run() {
+					GraphViewSeries series = new GraphViewSeries();
+					for (int i = 0; i < points; i++) {
+						series.add(new GraphViewData(xs[i], ys[i]));
+					}
+					return series;
+				}
+			},
+			new Method() {
+				public String name() {
+					return "addAll_arrays";
+				}
+
+				public GraphViewSeries run() {
+					GraphViewSeries series = new GraphViewSeries();
+					for (int off = 0; off < points; off += packet) {
+						series.addAll(xs, ys, off, Math.min(packet, points - off));
+					}
+					return series;
+				}
+			},
+			new Method() {
+				public String name() {
+					return "addAll_bytebuffer_interleaved";
+				}
+
+				public GraphViewSeries run() {
+					GraphViewSeries series = new GraphViewSeries();
+					ByteBuffer buffer = interleaved.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+					for (int off = 0; off < points; off += packet) {
+						buffer.limit(16 * Math.min(off + packet, points)).position(16 * off);
+						series.addAll(buffer);
+					}
+					return series;
+				}
+			},
+			new Method() {
+				public String name() {
+					return "addAll_bytebuffer_columns";
+				}
+
+				public GraphViewSeries run() {
+					GraphViewSeries series = new GraphViewSeries();
+					ByteBuffer xBuffer = xBytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+					ByteBuffer yBuffer = yBytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+					for (int off = 0; off < points; off += packet) {
+						int end = 8 * Math.min(off + packet, points);
+						xBuffer.limit(end).position(8 * off);
+						yBuffer.limit(end).position(8 * off);
+						series.addAll(xBuffer, yBuffer);
+					}
+					return series;
+				}
+			},
+			new Method() {
+				public String name() {
+					return "addAll_doublebuffer_interleaved";
+				}
+
+				public GraphViewSeries run() {
+					GraphViewSeries series = new GraphViewSeries();
+					DoubleBuffer buffer = interleaved.duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+					for (int off = 0; off < points; off += packet) {
+						buffer.limit(2 * Math.min(off + packet, points)).position(2 * off);
+						series.addAll(buffer);
+					}
+					return series;
+				}
+			},
+		};
+
+		System.out.println("method,points,packet,points_per_sec");
+		for (Method method : methods) {
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < RUNS; run++) {
+				long start = System.nanoTime();
+				GraphViewSeries series = method.run();
+				long elapsed = System.nanoTime() - start;
+				if (series.size() != points) {
+					throw new IllegalStateException(method.name() + " ingested " + series.size() + " of " + points + " points");
+				}
+				best = Math.min(best, elapsed);
+			}
+			System.out.println(method.name() + "," + points + "," + packet + "," + (long) (points * 1e9 / best));
+		}
+	}
+}
@@ -1,12 +1,10 @@
 package com.jjoe64.graphs;
 
-import java.util.List;
-
 import android.content.Context;
 import android.graphics.Canvas;
 
 import com.jjoe64.graphview.GraphView;
-import com.jjoe64.graphview.GraphViewSeries.GraphViewData;
+import com.jjoe64.graphview.GraphViewSeries;
 
 /**
  * Draws a Bar Chart
@@ -18,17 +16,30 @@ public class BarGraphView extends GraphView {
 	}
 
 	@Override
-	public void drawSeries(Canvas canvas,int color,  List<GraphViewData> values, float graphwidth, float graphheight,
+	public void drawSeries(Canvas canvas,int color,  GraphViewSeries series, int start, int end, float graphwidth, float graphheight,
 			float border, double minX, double minY, double diffX, double diffY,
 			float horstart) {
-		float colwidth = (graphwidth - (2 * border)) / values.size();
+		float colwidth = (graphwidth - (2 * border)) / (end - start);
 
 		// draw data
-		for (int i = 0; i < values.size(); i++) {
-			float valY = (float) (values.get(i).valueY - minY);
+		for (int i = 0; i < end - start; i++) {
+			float valY = (float) (series.getY(start + i) - minY);
 			float ratY = (float) (valY / diffY);
 			float y = graphheight * ratY;
 			canvas.drawRect((i * colwidth) + horstart, (border - y) + graphheight, ((i * colwidth) + horstart) + (colwidth - 1), graphheight + border - 1, paint);
 		}
 	}
+
+	/**
+	 * draws the prepared vertices as bars of equal width, like drawSeries
+	 * does with the data points. a downsampled series gets one bar per
+	 * selected data point.
+	 */
+	@Override
+	protected void drawPreparedSeries(Canvas canvas, int color, float[] vertices, int count, float graphwidth, float graphheight, float border, float horstart) {
+		float colwidth = (graphwidth - (2 * border)) / count;
+		for (int i = 0; i < count; i++) {
+			canvas.drawRect((i * colwidth) + horstart, vertices[2 * i + 1], ((i * colwidth) + horstart) + (colwidth - 1), graphheight + border - 1, paint);
+		}
+	}
 }
@@ -1,7 +1,6 @@
 package com.jjoe64.graphs;
 
-import java.util.Date;
-import java.util.List;
+import java.util.TimeZone;
 import java.util.WeakHashMap;
 
 import android.content.Context;
@@ -16,7 +15,12 @@ import android.util.AttributeSet;
 
 import com.jjoe64.graphview.GraphView;
 import com.jjoe64.graphview.GraphViewSeries;
-import com.jjoe64.graphview.GraphViewSeries.GraphViewData;
+import com.jjoe64.graphview.GraphViewSeries.Downsampling;
+import com.jjoe64.graphview.LineSegmentBuffer;
+import com.jjoe64.graphview.LttbDownsampler;
+import com.jjoe64.graphview.M4Aggregator;
+import com.jjoe64.graphview.core.TimeLabelFormatter;
+import com.jjoe64.graphview.core.TimeLabelFormatter.Granularity;
 
 /**
  * Line Graph View. This draws a line chart.
@@ -27,12 +31,28 @@ import com.jjoe64.graphview.GraphViewSeries.GraphViewData;
  *         General Public License (LGPL) http://www.gnu.org/licenses/lgpl.html
  */
 public class LineGraphView extends GraphView {
+	/**
+	 * how the graph line is handed to the canvas
+	 */
+	public enum RenderBackend {
+		/** one Path per series, supports smoothing */
+		PATH,
+		/**
+		 * the visible points are transformed in one bulk call into a reused
+		 * buffer and drawn with Canvas.drawLines / drawPoints, no Path is
+		 * built. smoothing is not supported.
+		 */
+		LINES
+	}
 
 	private static final float CIRCLE_RADIUS = 3f;
 	
 	/** used to draw a circle at each point */
 	private Paint mCirclePaint;
 	private Paint mCircleOuterPaint;
+	/** circles for the LINES backend, drawn as round points */
+	private Paint mPointPaint;
+	private Paint mPointOuterPaint;
 
 	/** used to fill the area below the graph line */
 	private Paint mFillPaint;
@@ -53,18 +73,56 @@ public class LineGraphView extends GraphView {
 	/** if true graph line will be smoothed by a quadratic fit function */
 	private boolean mSmoothLine = false;
 
+	private RenderBackend mRenderBackend = RenderBackend.PATH;
+
 	/** helpers to avoit 'new' during draw calls */
 	private final float[] mPoints = new float[2];
 	private Path mPath = new Path();
 	private Path mCirclesPath = new Path();
 	private Path mClosedPath = new Path();
 	private CornerPathEffect mPathEffect = new CornerPathEffect(5);
+	private final LineSegmentBuffer mSegments = new LineSegmentBuffer();
+	private final Matrix mLinesMatrix = new Matrix();
 
 	/** used for formatting the labels */
-	private java.text.DateFormat mDateFormat = null;
-	private Date mDate = new Date();
+	private TimeLabelFormatter mTimeFormatter = null;
+
+	/**
+	 * screen space geometry of a series, built for a wider x range than the
+	 * viewport. x is relative to fromX, so scrolling only translates it.
+	 */
+	private static final class CachedPath {
+		/** data version of the previous frame */
+		int seenVersion;
+		boolean valid;
+
+		/** cache key */
+		int version;
+		double scaleX;
+		double minY;
+		double diffY;
+		float graphheight;
+		float border;
+		boolean clamp;
+		boolean smooth;
+
+		/** x range the geometry covers */
+		double fromX;
+		double toX;
+		int count;
+		float startX;
+		float lastX;
+		Path path;
+		Path circlesPath;
+		Path closedPath;
+	}
 
-	WeakHashMap<GraphViewSeries, Path> mCachedPath = new WeakHashMap<GraphViewSeries, Path>();
+	private final WeakHashMap<GraphViewSeries, CachedPath> mCachedPath = new WeakHashMap<GraphViewSeries, CachedPath>();
+	private final int[] mCacheRange = new int[2];
+
+	/** downsampling state of each series, caches the last selection */
+	private final WeakHashMap<GraphViewSeries, LttbDownsampler> mDownsamplers = new WeakHashMap<GraphViewSeries, LttbDownsampler>();
+	private final WeakHashMap<GraphViewSeries, M4Aggregator> mAggregators = new WeakHashMap<GraphViewSeries, M4Aggregator>();
 
 	private void init() {
 
@@ -107,6 +165,25 @@ public class LineGraphView extends GraphView {
 			setStrokeCap(Cap.ROUND);
 			}
 		};
+
+		mPointPaint = new Paint() {
+			{
+				setStyle(Paint.Style.STROKE);
+				setAntiAlias(true);
+				setStrokeWidth(2 * CIRCLE_RADIUS);
+				setStrokeCap(Cap.ROUND);
+			}
+		};
+
+		// covers the same area as the stroked outline of a circle
+		mPointOuterPaint = new Paint() {
+			{
+				setStyle(Paint.Style.STROKE);
+				setAntiAlias(true);
+				setStrokeWidth(2 * CIRCLE_RADIUS + CIRCLE_RADIUS + .5f);
+				setStrokeCap(Cap.ROUND);
+			}
+		};
 	}
 
 	public LineGraphView(Context context) {
@@ -156,19 +233,56 @@ public class LineGraphView extends GraphView {
 
 
 	@Override
-	public void drawSeries(Canvas canvas, int color, List<GraphViewData> values, float graphwidth, float graphheight, float border, double minX, double minY, double diffX, double diffY, float horstart) {
+	public void drawSeries(Canvas canvas, int color, GraphViewSeries series, int start, int end, float graphwidth, float graphheight, float border, double minX, double minY, double diffX, double diffY, float horstart) {
 		float startX = 0;
+
+		if (mRenderBackend == RenderBackend.PATH && series.getDownsampling() == Downsampling.NONE
+				&& drawCachedSeries(canvas, color, series, graphwidth, graphheight, border, minX, minY, diffX, diffY, horstart)) {
+			return;
+		}
+
+		// optionally reduce the data to a few points per pixel
+		int[] indices = null;
+		float[] vertices = null;
+		int count = end - start;
+		if (series.getDownsampling() == Downsampling.M4) {
+			// at most 4 points per pixel column
+			if (count > 4 * graphwidth) {
+				M4Aggregator aggregator = mAggregators.get(series);
+				if (aggregator == null) {
+					aggregator = new M4Aggregator();
+					mAggregators.put(series, aggregator);
+				}
+				int level = getLevelOfDetail(series, start, end);
+				count = aggregator.aggregate(series, start, end, level, graphwidth, graphheight, border, minX, minY, diffX, diffY, horstart);
+				vertices = aggregator.getVertices();
+			}
+		} else if (series.getDownsampling() == Downsampling.LTTB) {
+			int threshold = (int) (graphwidth * series.getDownsamplingDensity());
+			if (count > threshold) {
+				LttbDownsampler downsampler = mDownsamplers.get(series);
+				if (downsampler == null) {
+					downsampler = new LttbDownsampler();
+					mDownsamplers.put(series, downsampler);
+				}
+				count = downsampler.downsample(series, start, end, threshold);
+				indices = downsampler.getIndices();
+			}
+		}
+		reportDrawnPoints(count);
+
+		if (mRenderBackend == RenderBackend.LINES) {
+			drawSeriesLines(canvas, color, series, start, count, indices, vertices, graphwidth, graphheight, border, minX, minY, diffX, diffY, horstart);
+			return;
+		}
+
 		mPath = new Path(); //bug with hardware acceleration forces me to create a new path
-		mPath.incReserve(values.size());
+		mPath.incReserve(count);
 		mCirclesPath = new Path();
-		mCirclesPath.incReserve(values.size());
+		mCirclesPath.incReserve(count);
 		
 		
-		mInnerPaint.setColor(color);
-		mOuterPaint.setColor(calculateOuterColor(color));
-		mFillPaint.setColor(calculateFillColor(color));
-		mCirclePaint.setColor(color);
-		mCircleOuterPaint.setColor(calculateOuterColor(color));
+		setColors(color);
 		/*transform data points into screen space*/
 		mViewPortMatrix.reset();
 		//1. scale
@@ -180,21 +294,28 @@ public class LineGraphView extends GraphView {
 		//3. adjust for borders
 		mViewPortMatrix.postTranslate(horstart, border);
 		double yVal,xVal;
-		for (int i = 0; i < values.size(); i++) {
-			xVal = values.get(i).valueX;
-			yVal = values.get(i).valueY;
-			
-			
-			/*clamp to bounds*/
-			if (isManualYAxisBounds()) { 
-				yVal = Math.min(yVal,getManualMaxYValue());
-				yVal = Math.max(yVal,getManualMinYValue());
+		for (int j = 0; j < count; j++) {
+			if (vertices != null) {
+				// already in screen space
+				mPoints[0] = vertices[2 * j];
+				mPoints[1] = vertices[2 * j + 1];
+			} else {
+				int i = indices == null ? start + j : indices[j];
+				xVal = series.getX(i);
+				yVal = series.getY(i);
+
+
+				/*clamp to bounds*/
+				if (isManualYAxisBounds()) {
+					yVal = Math.min(yVal,getManualMaxYValue());
+					yVal = Math.max(yVal,getManualMinYValue());
+				}
+				mPoints[0] = (float)xVal;
+				mPoints[1] = (float)yVal;
+				mViewPortMatrix.mapPoints(mPoints);
 			}
-			mPoints[0] = (float)xVal;
-			mPoints[1] = (float)yVal;
-			mViewPortMatrix.mapPoints(mPoints);
 
-			if (i > 0) {
+			if (j > 0) {
 				mPath.lineTo(mPoints[0], mPoints[1]);
 			} else {
 				startX = mPoints[0];
@@ -203,18 +324,237 @@ public class LineGraphView extends GraphView {
 			mCirclesPath.addCircle(mPoints[0], mPoints[1], CIRCLE_RADIUS, Path.Direction.CW);			
 		}
 		
+		drawPaths(canvas, startX, mPoints[0], mPoints[1], graphheight, border);
+	}
+
+	/**
+	 * draws the series from its cached geometry, moved to the current
+	 * viewport. the geometry covers half a viewport on both sides, a
+	 * horizontal scroll within that range does not touch the data points.
+	 *
+	 * @return false if the data changed since the last frame. live data is
+	 *         drawn the normal way, building a cache that is used only once
+	 *         would cost more than it saves.
+	 */
+	private boolean drawCachedSeries(Canvas canvas, int color, GraphViewSeries series, float graphwidth, float graphheight, float border, double minX, double minY, double diffX, double diffY, float horstart) {
+		int version = series.getVersion();
+		CachedPath cache = mCachedPath.get(series);
+		if (cache == null) {
+			cache = new CachedPath();
+			cache.seenVersion = version;
+			mCachedPath.put(series, cache);
+		} else if (cache.seenVersion != version) {
+			cache.seenVersion = version;
+			cache.valid = false;
+			return false;
+		}
+
+		double scaleX = graphwidth / diffX;
+		boolean clamp = isManualYAxisBounds();
+		if (!cache.valid || cache.version != version || cache.scaleX != scaleX || cache.minY != minY || cache.diffY != diffY || cache.graphheight != graphheight
+				|| cache.border != border || cache.clamp != clamp || cache.smooth != mSmoothLine || minX < cache.fromX || minX + diffX > cache.toX) {
+			buildCachedPath(cache, series, graphheight, border, minX, minY, diffX, diffY, scaleX, clamp);
+		}
+		// the whole cached geometry is stroked, the clip only hides a part
+		reportDrawnPoints(cache.count);
+		if (cache.count == 0) {
+			return true;
+		}
+
+		setColors(color);
+		if (drawBackground && cache.closedPath == null) {
+			cache.closedPath = closePath(cache.path, cache.startX, cache.lastX, graphheight + border);
+		}
+		canvas.save();
+		canvas.clipRect(horstart, 0, horstart + graphwidth, graphheight + 2 * border);
+		canvas.translate((float) ((cache.fromX - minX) * scaleX) + horstart, 0);
+		strokePaths(canvas, cache.path, cache.circlesPath, drawBackground ? cache.closedPath : null);
+		canvas.restore();
+		return true;
+	}
+
+	private void buildCachedPath(CachedPath cache, GraphViewSeries series, float graphheight, float border, double minX, double minY, double diffX, double diffY, double scaleX, boolean clamp) {
+		cache.valid = true;
+		cache.version = series.getVersion();
+		cache.scaleX = scaleX;
+		cache.minY = minY;
+		cache.diffY = diffY;
+		cache.graphheight = graphheight;
+		cache.border = border;
+		cache.clamp = clamp;
+		cache.smooth = mSmoothLine;
+		cache.fromX = minX - diffX / 2;
+		cache.toX = minX + diffX * 1.5;
+		cache.count = 0;
+		cache.closedPath = null;
+		if (!series.findRange(cache.fromX, cache.toX - cache.fromX, mCacheRange)) {
+			return;
+		}
+
+		int start = mCacheRange[0];
+		int count = mCacheRange[1] - start;
+		Path path = new Path();
+		path.incReserve(count);
+		Path circlesPath = new Path();
+		circlesPath.incReserve(count);
+		double scaleY = graphheight / diffY;
+		float x = 0, y = 0;
+		for (int j = 0; j < count; j++) {
+			double yVal = series.getY(start + j);
+			if (clamp) {
+				yVal = Math.max(Math.min(yVal, minY + diffY), minY);
+			}
+			x = (float) ((series.getX(start + j) - cache.fromX) * scaleX);
+			y = (float) (graphheight - (yVal - minY) * scaleY) + border;
+			if (j > 0) {
+				path.lineTo(x, y);
+			} else {
+				cache.startX = x;
+				path.moveTo(x, y);
+			}
+			circlesPath.addCircle(x, y, CIRCLE_RADIUS, Path.Direction.CW);
+		}
+		if (mSmoothLine) {
+			path.lineTo(x, y);
+		}
+		cache.lastX = x;
+		cache.count = count;
+		cache.path = path;
+		cache.circlesPath = circlesPath;
+	}
+
+	/**
+	 * LINES backend of drawSeries
+	 * @param indices selected data points or null
+	 * @param vertices points in screen space or null
+	 */
+	private void drawSeriesLines(Canvas canvas, int color, GraphViewSeries series, int start, int count, int[] indices, float[] vertices, float graphwidth, float graphheight, float border, double minX, double minY, double diffX, double diffY, float horstart) {
+		float[] points = mSegments.ensurePoints(count);
+		if (vertices != null) {
+			System.arraycopy(vertices, 0, points, 0, 2 * count);
+		} else {
+			boolean clamp = isManualYAxisBounds();
+			double manualMinY = getManualMinYValue();
+			double manualMaxY = getManualMaxYValue();
+			for (int j = 0; j < count; j++) {
+				int i = indices == null ? start + j : indices[j];
+				double yVal = series.getY(i);
+				if (clamp) {
+					yVal = Math.max(Math.min(yVal, manualMaxY), manualMinY);
+				}
+				// relative to the viewport in double precision, large x values like timestamps don't fit into a float
+				points[2 * j] = (float) (series.getX(i) - minX);
+				points[2 * j + 1] = (float) (yVal - minY);
+			}
+			mLinesMatrix.reset();
+			mLinesMatrix.postScale((float) (graphwidth / diffX), (float) (-graphheight / diffY));
+			mLinesMatrix.postTranslate(horstart, graphheight + border);
+			mLinesMatrix.mapPoints(points, 0, points, 0, count);
+		}
+		drawLines(canvas, color, count, graphheight, border);
+	}
+
+	/**
+	 * draws the first count points of mSegments
+	 */
+	private void drawLines(Canvas canvas, int color, int count, float graphheight, float border) {
+		if (count == 0) {
+			return;
+		}
+		setColors(color);
+		mPointPaint.setColor(color);
+		mPointOuterPaint.setColor(calculateOuterColor(color));
+		float[] points = mSegments.getPoints();
+		int length = mSegments.buildSegments(count);
+		float[] segments = mSegments.getSegments();
+
+		if (drawBackground) {
+			mClosedPath = new Path();
+			mClosedPath.incReserve(count + 2);
+			mClosedPath.moveTo(points[0], points[1]);
+			for (int j = 1; j < count; j++) {
+				mClosedPath.lineTo(points[2 * j], points[2 * j + 1]);
+			}
+			mClosedPath.lineTo(points[2 * count - 2], graphheight + border);
+			mClosedPath.lineTo(points[0], graphheight + border);
+			mClosedPath.close();
+			canvas.drawPath(mClosedPath, mFillPaint);
+		}
+		mOuterPaint.setPathEffect(null);
+		mInnerPaint.setPathEffect(null);
+		canvas.drawLines(segments, 0, length, mOuterPaint);
+		canvas.drawPoints(points, 0, 2 * count, mPointOuterPaint);
+		canvas.drawLines(segments, 0, length, mInnerPaint);
+		canvas.drawPoints(points, 0, 2 * count, mPointPaint);
+	}
+
+	@Override
+	protected void drawPreparedSeries(Canvas canvas, int color, float[] vertices, int count, float graphwidth, float graphheight, float border, float horstart) {
+		if (mRenderBackend == RenderBackend.LINES) {
+			System.arraycopy(vertices, 0, mSegments.ensurePoints(count), 0, 2 * count);
+			drawLines(canvas, color, count, graphheight, border);
+			return;
+		}
+		mPath = new Path(); //bug with hardware acceleration forces me to create a new path
+		mPath.incReserve(count);
+		mCirclesPath = new Path();
+		mCirclesPath.incReserve(count);
+		setColors(color);
+		mPath.moveTo(vertices[0], vertices[1]);
+		for (int j = 0; j < count; j++) {
+			if (j > 0) {
+				mPath.lineTo(vertices[2 * j], vertices[2 * j + 1]);
+			}
+			mCirclesPath.addCircle(vertices[2 * j], vertices[2 * j + 1], CIRCLE_RADIUS, Path.Direction.CW);
+		}
+		drawPaths(canvas, vertices[0], vertices[2 * count - 2], vertices[2 * count - 1], graphheight, border);
+	}
+
+	private void setColors(int color) {
+		mInnerPaint.setColor(color);
+		mOuterPaint.setColor(calculateOuterColor(color));
+		mFillPaint.setColor(calculateFillColor(color));
+		mCirclePaint.setColor(color);
+		mCircleOuterPaint.setColor(calculateOuterColor(color));
+	}
+
+	/**
+	 * draws mPath and mCirclesPath and optionally the background below the line
+	 * @param startX screen x of the first point
+	 * @param lastX screen x of the last point
+	 * @param lastY screen y of the last point
+	 */
+	private void drawPaths(Canvas canvas, float startX, float lastX, float lastY, float graphheight, float border) {
 		if (mSmoothLine){
-			mPath.lineTo(mPoints[0], mPoints[1]);			
+			mPath.lineTo(lastX, lastY);
 		}
 		
 		if (drawBackground) {
 			//mClosedPath.reset();
 			//mClosedPath.addPath(mPath);
-			mClosedPath = new Path(mPath);
-			mClosedPath.lineTo(mPoints[0], graphheight + border);
-			mClosedPath.lineTo(startX, graphheight + border);
-			mClosedPath.close();
-			canvas.drawPath(mClosedPath, mFillPaint);
+			mClosedPath = closePath(mPath, startX, lastX, graphheight + border);
+		}
+		strokePaths(canvas, mPath, mCirclesPath, drawBackground ? mClosedPath : null);
+	}
+
+	/**
+	 * @return copy of path that is closed along the bottom of the graph
+	 */
+	private static Path closePath(Path path, float startX, float lastX, float bottom) {
+		Path closed = new Path(path);
+		closed.lineTo(lastX, bottom);
+		closed.lineTo(startX, bottom);
+		closed.close();
+		return closed;
+	}
+
+	/**
+	 * @param closedPath
+	 *            area below the line or null
+	 */
+	private void strokePaths(Canvas canvas, Path path, Path circlesPath, Path closedPath) {
+		if (closedPath != null) {
+			canvas.drawPath(closedPath, mFillPaint);
 		}
 		if (mSmoothLine){
 			mOuterPaint.setPathEffect(mPathEffect);
@@ -223,20 +563,42 @@ public class LineGraphView extends GraphView {
 			mOuterPaint.setPathEffect(null);
 			mInnerPaint.setPathEffect(null);
 		}
-		canvas.drawPath(mPath, mOuterPaint);
-		canvas.drawPath(mCirclesPath, mCircleOuterPaint);
-		canvas.drawPath(mPath, mInnerPaint);		
-		canvas.drawPath(mCirclesPath, mCirclePaint);		
+		canvas.drawPath(path, mOuterPaint);
+		canvas.drawPath(circlesPath, mCircleOuterPaint);
+		canvas.drawPath(path, mInnerPaint);
+		canvas.drawPath(circlesPath, mCirclePaint);
+	}
+
+	private TimeLabelFormatter getTimeFormatter() {
+		if (mTimeFormatter == null) {
+			mTimeFormatter = new TimeLabelFormatter(DateFormat.getTimeFormat(getContext()), DateFormat.getDateFormat(getContext()));
+		}
+		return mTimeFormatter;
+	}
+
+	/**
+	 * the x values are formatted as time, so the x labels are placed at round
+	 * times
+	 */
+	@Override
+	protected TimeZone getTimeZoneX() {
+		return getTimeFormatter().getTimeZone();
 	}
 
 	@Override
 	protected String formatLabel(double value, boolean isValueX) {
 		if (isValueX) {
-			if (mDateFormat == null) {
-				mDateFormat = DateFormat.getTimeFormat(getContext());
+			TimeLabelFormatter formatter = getTimeFormatter();
+			double step = getLabelStep(true);
+			if (step > 0) {
+				Granularity granularity = Granularity.forStep(step);
+				if (granularity != formatter.getGranularity()) {
+					// labels cached with the other granularity are formatted again
+					formatter.setGranularity(granularity);
+					resetLabelCache();
+				}
 			}
-			mDate.setTime((long) value);
-			return mDateFormat.format(mDate);
+			return formatter.format((long) value);
 		} else {
 			return super.formatLabel(value, isValueX);
 		}
@@ -260,6 +622,19 @@ public class LineGraphView extends GraphView {
 		this.mSmoothLine = value;
 	}
 
+	public RenderBackend getRenderBackend() {
+		return mRenderBackend;
+	}
+
+	/**
+	 * @param backend
+	 *            {@link RenderBackend#LINES} for large series, the default is
+	 *            {@link RenderBackend#PATH}
+	 */
+	public void setRenderBackend(RenderBackend backend) {
+		this.mRenderBackend = backend;
+	}
+
 	public boolean getDrawBackground() {
 		return drawBackground;
 	}
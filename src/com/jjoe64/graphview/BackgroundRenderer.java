@@ -0,0 +1,308 @@
+package com.jjoe64.graphview;
+
+import java.util.List;
+import java.util.WeakHashMap;
+
+import com.jjoe64.graphview.GraphViewSeries.Downsampling;
+
+/**
+ * prepares the screen space vertices of the series on a worker thread. the
+ * UI thread posts the current viewport with {@link #request}, takes the
+ * newest finished frame with {@link #acquireFrame()} and only has to issue
+ * the draw calls.
+ *
+ * three frames rotate between the threads: the worker writes one, one holds
+ * the newest finished result and the UI thread draws the third. the lock is
+ * only held to swap references, so neither thread waits for the other's work.
+ */
+final class BackgroundRenderer {
+	interface Listener {
+		/**
+		 * called on the worker thread when a new frame is ready
+		 */
+		void onFrameReady();
+	}
+
+	/**
+	 * input and result of one preparation
+	 */
+	static final class Frame {
+		double viewportStart;
+		double viewportSize;
+		double minX;
+		double minY;
+		double diffX;
+		double diffY;
+		float graphwidth;
+		float graphheight;
+		float border;
+		float horstart;
+
+		int seriesCount;
+		GraphViewSeries[] series = new GraphViewSeries[0];
+		/** data versions the vertices were prepared from */
+		int[] versions = new int[0];
+		/** per series x, y pairs in screen coordinates */
+		float[][] vertices = new float[0][];
+		int[] vertexCounts = new int[0];
+		/** per series data points in the viewport, before downsampling */
+		int[] inputCounts = new int[0];
+
+		private void ensureSeriesCapacity(int count) {
+			if (series.length < count) {
+				GraphViewSeries[] grownSeries = new GraphViewSeries[count];
+				int[] grownVersions = new int[count];
+				float[][] grownVertices = new float[count][];
+				int[] grownCounts = new int[count];
+				int[] grownInputCounts = new int[count];
+				System.arraycopy(vertices, 0, grownVertices, 0, vertices.length);
+				series = grownSeries;
+				versions = grownVersions;
+				vertices = grownVertices;
+				vertexCounts = grownCounts;
+				inputCounts = grownInputCounts;
+			}
+		}
+
+		private void copyInput(Frame other) {
+			viewportStart = other.viewportStart;
+			viewportSize = other.viewportSize;
+			minX = other.minX;
+			minY = other.minY;
+			diffX = other.diffX;
+			diffY = other.diffY;
+			graphwidth = other.graphwidth;
+			graphheight = other.graphheight;
+			border = other.border;
+			horstart = other.horstart;
+			ensureSeriesCapacity(other.seriesCount);
+			for (int i = 0; i < other.seriesCount; i++) {
+				series[i] = other.series[i];
+				versions[i] = other.versions[i];
+			}
+			for (int i = other.seriesCount; i < seriesCount; i++) {
+				series[i] = null;
+			}
+			seriesCount = other.seriesCount;
+		}
+
+		private boolean sameInput(Frame other) {
+			if (viewportStart != other.viewportStart || viewportSize != other.viewportSize || minX != other.minX || minY != other.minY || diffX != other.diffX
+					|| diffY != other.diffY || graphwidth != other.graphwidth || graphheight != other.graphheight || border != other.border || horstart != other.horstart
+					|| seriesCount != other.seriesCount) {
+				return false;
+			}
+			for (int i = 0; i < seriesCount; i++) {
+				if (series[i] != other.series[i] || versions[i] != other.versions[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private final Listener mListener;
+	/** guarded by this */
+	private final Frame mRequest = new Frame();
+	private boolean mRequestPending;
+	private Frame mReady = new Frame();
+	private boolean mReadyIsNew;
+	private Frame mDrawing = new Frame();
+	private Thread mThread;
+
+	BackgroundRenderer(Listener listener) {
+		mListener = listener;
+	}
+
+	synchronized void start() {
+		if (mThread == null) {
+			mThread = new Thread(new Worker(), "GraphView renderer");
+			mThread.setDaemon(true);
+			mThread.start();
+		}
+	}
+
+	synchronized void stop() {
+		if (mThread != null) {
+			mThread.interrupt();
+			mThread = null;
+		}
+	}
+
+	/**
+	 * asks for a frame of the visible series. a pending request that was not
+	 * started yet is replaced.
+	 */
+	synchronized void request(List<GraphViewSeries> graphSeries, double viewportStart, double viewportSize, float graphwidth, float graphheight, float border, double minX, double minY,
+			double diffX, double diffY, float horstart) {
+		Frame request = mRequest;
+		request.viewportStart = viewportStart;
+		request.viewportSize = viewportSize;
+		request.minX = minX;
+		request.minY = minY;
+		request.diffX = diffX;
+		request.diffY = diffY;
+		request.graphwidth = graphwidth;
+		request.graphheight = graphheight;
+		request.border = border;
+		request.horstart = horstart;
+		request.ensureSeriesCapacity(graphSeries.size());
+		int count = 0;
+		for (int i = 0; i < graphSeries.size(); i++) {
+			GraphViewSeries series = graphSeries.get(i);
+			if (series.isVisible()) {
+				request.series[count++] = series;
+			}
+		}
+		for (int i = count; i < request.seriesCount; i++) {
+			request.series[i] = null;
+		}
+		request.seriesCount = count;
+		mRequestPending = true;
+		notifyAll();
+	}
+
+	/**
+	 * @return the newest finished frame. it stays valid until the next call.
+	 */
+	synchronized Frame acquireFrame() {
+		if (mReadyIsNew) {
+			Frame frame = mDrawing;
+			mDrawing = mReady;
+			mReady = frame;
+			mReadyIsNew = false;
+		}
+		return mDrawing;
+	}
+
+	/**
+	 * the worker thread. everything but the frame exchange is owned by one
+	 * worker, so a stopped worker that is still busy does not disturb a new one.
+	 */
+	private final class Worker implements Runnable {
+		private final Frame mLastInput = new Frame();
+		private boolean mHasLastInput;
+		private final int[] mRange = new int[2];
+		private final WeakHashMap<GraphViewSeries, M4Aggregator> mAggregators = new WeakHashMap<GraphViewSeries, M4Aggregator>();
+		private final WeakHashMap<GraphViewSeries, LttbDownsampler> mDownsamplers = new WeakHashMap<GraphViewSeries, LttbDownsampler>();
+
+		@Override
+		public void run() {
+			Frame writing = new Frame();
+			while (true) {
+				synchronized (BackgroundRenderer.this) {
+					while (!mRequestPending) {
+						if (mThread != Thread.currentThread()) {
+							return;
+						}
+						try {
+							BackgroundRenderer.this.wait();
+						} catch (InterruptedException e) {
+							// stop() clears mThread, checked above
+						}
+					}
+					if (mThread != Thread.currentThread()) {
+						return;
+					}
+					writing.copyInput(mRequest);
+					mRequestPending = false;
+				}
+
+				// the data versions are part of the input. the snapshots are
+				// pinned so the versions match the prepared data.
+				for (int i = 0; i < writing.seriesCount; i++) {
+					writing.series[i].pin();
+				}
+				try {
+					for (int i = 0; i < writing.seriesCount; i++) {
+						writing.versions[i] = writing.series[i].getVersion();
+					}
+					if (mHasLastInput && writing.sameInput(mLastInput)) {
+						continue;
+					}
+					prepare(writing);
+				} finally {
+					for (int i = 0; i < writing.seriesCount; i++) {
+						writing.series[i].unpin();
+					}
+				}
+				mLastInput.copyInput(writing);
+				mHasLastInput = true;
+
+				synchronized (BackgroundRenderer.this) {
+					if (mThread != Thread.currentThread()) {
+						return;
+					}
+					Frame frame = mReady;
+					mReady = writing;
+					writing = frame;
+					mReadyIsNew = true;
+				}
+				mListener.onFrameReady();
+			}
+		}
+
+		private void prepare(Frame frame) {
+			for (int s = 0; s < frame.seriesCount; s++) {
+				GraphViewSeries series = frame.series[s];
+				frame.vertexCounts[s] = 0;
+				frame.inputCounts[s] = 0;
+				if (!series.findRange(frame.viewportStart, frame.viewportSize, mRange)) {
+					continue;
+				}
+				int start = mRange[0];
+				int end = mRange[1];
+				int count = end - start;
+				if (count <= 0) {
+					continue;
+				}
+				frame.inputCounts[s] = count;
+
+				int[] indices = null;
+				float[] vertices = null;
+				if (series.getDownsampling() == Downsampling.M4 && count > 4 * frame.graphwidth) {
+					M4Aggregator aggregator = mAggregators.get(series);
+					if (aggregator == null) {
+						aggregator = new M4Aggregator();
+						mAggregators.put(series, aggregator);
+					}
+					double pixels = (series.getX(end - 1) - series.getX(start)) * frame.graphwidth / frame.diffX;
+					int level = LodPyramid.levelFor(count, pixels);
+					count = aggregator.aggregate(series, start, end, level, frame.graphwidth, frame.graphheight, frame.border, frame.minX, frame.minY, frame.diffX,
+							frame.diffY, frame.horstart);
+					vertices = aggregator.getVertices();
+				} else if (series.getDownsampling() == Downsampling.LTTB && count > frame.graphwidth * series.getDownsamplingDensity()) {
+					LttbDownsampler downsampler = mDownsamplers.get(series);
+					if (downsampler == null) {
+						downsampler = new LttbDownsampler();
+						mDownsamplers.put(series, downsampler);
+					}
+					count = downsampler.downsample(series, start, end, (int) (frame.graphwidth * series.getDownsamplingDensity()));
+					indices = downsampler.getIndices();
+				}
+
+				float[] target = frame.vertices[s];
+				if (target == null || target.length < 2 * count) {
+					target = new float[2 * count + (count >> 2)];
+					frame.vertices[s] = target;
+				}
+				if (vertices != null) {
+					System.arraycopy(vertices, 0, target, 0, 2 * count);
+				} else {
+					double scaleX = frame.graphwidth / frame.diffX;
+					double scaleY = frame.graphheight / frame.diffY;
+					float top = frame.border;
+					float bottom = frame.border + frame.graphheight;
+					for (int j = 0; j < count; j++) {
+						int i = indices == null ? start + j : indices[j];
+						float y = (float) (frame.graphheight - (series.getY(i) - frame.minY) * scaleY) + top;
+						target[2 * j] = (float) ((series.getX(i) - frame.minX) * scaleX) + frame.horstart;
+						// clamp to the graph area, like manual y axis bounds
+						target[2 * j + 1] = y < top ? top : y > bottom ? bottom : y;
+					}
+				}
+				frame.vertexCounts[s] = count;
+			}
+		}
+	}
+}
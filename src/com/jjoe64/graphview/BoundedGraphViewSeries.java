@@ -0,0 +1,354 @@
+package com.jjoe64.graphview;
+
+import java.nio.DoubleBuffer;
+import java.util.Collections;
+
+/**
+ * a graph series with a fixed capacity for live data. if the series is full,
+ * every new data point drops the oldest one. the bounds are maintained in
+ * constant amortized time, so the series can be fed by
+ * {@link GraphView#addToSeries(int, GraphViewData)} forever.
+ *
+ * the data points are a sliding window over arrays of twice the capacity.
+ * dropping a point only moves the start of the window, so published
+ * snapshots stay valid. when the window reaches the end of the arrays, it is
+ * copied to the start of a second pair of arrays, once every capacity
+ * appends. the two pairs take turns, so appending does not allocate memory
+ * after the first copy. a new pair is only allocated if a reader still has
+ * a snapshot of the spare pair pinned, e.g. a frame that is drawn for longer
+ * than capacity appends take.
+ */
+public class BoundedGraphViewSeries extends GraphViewSeries {
+	/**
+	 * fixed size deque of array positions. used as monotonic queue for the
+	 * sliding window min/max.
+	 */
+	private static final class SlotDeque {
+		private final int[] slots;
+		private int first;
+		private int count;
+
+		SlotDeque(int capacity) {
+			slots = new int[capacity];
+		}
+
+		boolean isEmpty() {
+			return count == 0;
+		}
+
+		int peekFirst() {
+			return slots[first];
+		}
+
+		int peekLast() {
+			int i = first + count - 1;
+			return slots[i >= slots.length ? i - slots.length : i];
+		}
+
+		void pollFirst() {
+			first = first + 1 == slots.length ? 0 : first + 1;
+			count--;
+		}
+
+		void pollLast() {
+			count--;
+		}
+
+		void addLast(int slot) {
+			int i = first + count;
+			slots[i >= slots.length ? i - slots.length : i] = slot;
+			count++;
+		}
+
+		void clear() {
+			first = 0;
+			count = 0;
+		}
+
+		/**
+		 * moves all positions after the window was moved to new arrays
+		 */
+		void shift(int delta) {
+			for (int i = 0; i < count; i++) {
+				int j = first + i;
+				j = j >= slots.length ? j - slots.length : j;
+				slots[j] -= delta;
+			}
+		}
+	}
+
+	private final int mCapacity;
+	/** writer state, the window is mOffset to mOffset + mCount - 1 */
+	private double[] mBufferX;
+	private double[] mBufferY;
+	private int mOffset;
+	private int mCount;
+	/** the arrays before the last copy, reused by the next one */
+	private double[] mSpareX;
+	private double[] mSpareY;
+	/** incremented when the window is copied to other arrays */
+	private int mGeneration;
+	/** positions with increasing y values, the first one holds the minimum */
+	private final SlotDeque mMinDeque;
+	/** positions with decreasing y values, the first one holds the maximum */
+	private final SlotDeque mMaxDeque;
+	/** y range index over the array positions, created on the first range query */
+	private RangeMinMaxIndex mRangeIndex;
+
+	public BoundedGraphViewSeries(int capacity) {
+		this(null, null, capacity);
+	}
+
+	public BoundedGraphViewSeries(Integer color, int capacity) {
+		this(null, color, capacity);
+	}
+
+	/**
+	 * @param description
+	 * @param color
+	 * @param capacity
+	 *            maximum number of data points. older points are dropped.
+	 */
+	public BoundedGraphViewSeries(String description, Integer color, int capacity) {
+		super(description, color, Collections.<GraphViewData> emptyList());
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1, was " + capacity);
+		}
+		mCapacity = capacity;
+		mBufferX = new double[2 * capacity];
+		mBufferY = new double[2 * capacity];
+		mMinDeque = new SlotDeque(capacity);
+		mMaxDeque = new SlotDeque(capacity);
+		publish();
+	}
+
+	/**
+	 * @return maximum number of data points
+	 */
+	public int getCapacity() {
+		return mCapacity;
+	}
+
+	private double lastX() {
+		return mCount > 0 ? mBufferX[mOffset + mCount - 1] : Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * appends a data point. if the series is full, the oldest data point is
+	 * dropped.
+	 * @param x must not be smaller than the last x value of the series
+	 * @param y
+	 */
+	@Override
+	public synchronized void add(double x, double y) {
+		double lastX = lastX();
+		if (x < lastX) {
+			throw new IllegalArgumentException(x + "<" + lastX + "! x value must be larger than the last x values in the series");
+		}
+		append(x, y);
+		notifyDataChanged();
+	}
+
+	/**
+	 * appends several data points at once. the whole batch is validated
+	 * before anything is added. if the batch is larger than the capacity,
+	 * only its newest data points are kept.
+	 */
+	@Override
+	public synchronized void addAll(double[] xs, double[] ys, int off, int len) {
+		checkBatch(xs, ys, off, len, lastX());
+		if (len == 0) {
+			return;
+		}
+		int skip = Math.max(len - mCapacity, 0);
+		for (int i = off + skip; i < off + len; i++) {
+			append(xs[i], ys[i]);
+		}
+		notifyDataChanged();
+	}
+
+	@Override
+	public synchronized void addAll(DoubleBuffer xs, DoubleBuffer ys) {
+		int len = checkBuffers(xs, ys);
+		int xsPosition = xs.position();
+		int ysPosition = ys.position();
+		double lastX = lastX();
+		for (int i = xsPosition; i < xsPosition + len; i++) {
+			double x = xs.get(i);
+			if (x < lastX) {
+				throw new IllegalArgumentException(x + "<" + lastX + "! x value must be larger than the last x values in the series");
+			}
+			lastX = x;
+		}
+		for (int i = Math.max(len - mCapacity, 0); i < len; i++) {
+			append(xs.get(xsPosition + i), ys.get(ysPosition + i));
+		}
+		xs.position(xsPosition + len);
+		ys.position(ysPosition + len);
+		if (len > 0) {
+			notifyDataChanged();
+		}
+	}
+
+	@Override
+	public synchronized void addAll(DoubleBuffer xy) {
+		int len = checkInterleaved(xy);
+		int position = xy.position();
+		double lastX = lastX();
+		for (int i = 0; i < len; i++) {
+			double x = xy.get(position + 2 * i);
+			if (x < lastX) {
+				throw new IllegalArgumentException(x + "<" + lastX + "! x value must be larger than the last x values in the series");
+			}
+			lastX = x;
+		}
+		for (int i = Math.max(len - mCapacity, 0); i < len; i++) {
+			append(xy.get(position + 2 * i), xy.get(position + 2 * i + 1));
+		}
+		xy.position(position + 2 * len);
+		if (len > 0) {
+			notifyDataChanged();
+		}
+	}
+
+	private void append(double x, double y) {
+		if (mCount == mCapacity) {
+			evictOldest();
+		}
+		if (mOffset + mCount == mBufferX.length) {
+			compact();
+		}
+		int position = mOffset + mCount;
+		mBufferX[position] = x;
+		mBufferY[position] = y;
+		mCount++;
+		if (mRangeIndex != null) {
+			mRangeIndex.include(position, y);
+		}
+
+		while (!mMinDeque.isEmpty() && mBufferY[mMinDeque.peekLast()] >= y) {
+			mMinDeque.pollLast();
+		}
+		mMinDeque.addLast(position);
+		while (!mMaxDeque.isEmpty() && mBufferY[mMaxDeque.peekLast()] <= y) {
+			mMaxDeque.pollLast();
+		}
+		mMaxDeque.addLast(position);
+	}
+
+	/**
+	 * copies the window to the start of the spare arrays. the current ones
+	 * may still be read through a snapshot and become the spare ones.
+	 */
+	private void compact() {
+		double[] bufferX = mSpareX;
+		double[] bufferY = mSpareY;
+		// new snapshots only see the current arrays, so only pins taken
+		// before the last copy can hold the spare ones
+		if (bufferX == null || isPinned(bufferX)) {
+			bufferX = new double[mBufferX.length];
+			bufferY = new double[mBufferY.length];
+		}
+		System.arraycopy(mBufferX, mOffset, bufferX, 0, mCount);
+		System.arraycopy(mBufferY, mOffset, bufferY, 0, mCount);
+		mSpareX = mBufferX;
+		mSpareY = mBufferY;
+		mBufferX = bufferX;
+		mBufferY = bufferY;
+		mMinDeque.shift(mOffset);
+		mMaxDeque.shift(mOffset);
+		mOffset = 0;
+		mGeneration++;
+		mRangeIndex = null;
+	}
+
+	private void evictOldest() {
+		// the oldest position can only be at the front of a deque
+		if (mMinDeque.peekFirst() == mOffset) {
+			mMinDeque.pollFirst();
+		}
+		if (mMaxDeque.peekFirst() == mOffset) {
+			mMaxDeque.pollFirst();
+		}
+		mOffset++;
+		mCount--;
+	}
+
+	/**
+	 * only removing the oldest data points (start == 0) is supported
+	 */
+	@Override
+	public synchronized void removeRange(int start, int end) {
+		if (start < 0 || end > mCount || start > end) {
+			throw new IndexOutOfBoundsException("range " + start + ".." + end + ", size " + mCount);
+		}
+		if (start != 0) {
+			throw new UnsupportedOperationException("only the oldest data points can be removed from a bounded series");
+		}
+		for (int i = start; i < end; i++) {
+			evictOldest();
+		}
+		notifyDataChanged();
+	}
+
+	@Override
+	public synchronized void clear() {
+		// the positions behind the window are never written, a snapshot of
+		// the old window stays valid
+		mOffset += mCount;
+		mCount = 0;
+		mMinDeque.clear();
+		mMaxDeque.clear();
+		notifyDataChanged();
+	}
+
+	/**
+	 * keeps the newest capacity data points
+	 */
+	@Override
+	void replaceData(double[] xs, double[] ys, int len) {
+		mOffset += mCount;
+		mCount = 0;
+		mMinDeque.clear();
+		mMaxDeque.clear();
+		for (int i = Math.max(len - mCapacity, 0); i < len; i++) {
+			append(xs[i], ys[i]);
+		}
+	}
+
+	@Override
+	Data snapshot() {
+		if (mCount == 0) {
+			return newData(mBufferX, mBufferY, mOffset, 0, DEFAULT_MIN_X, DEFAULT_MAX_X, DEFAULT_MIN_Y, DEFAULT_MAX_Y, mGeneration);
+		}
+		return newData(mBufferX, mBufferY, mOffset, mCount, mBufferX[mOffset], mBufferX[mOffset + mCount - 1], mBufferY[mMinDeque.peekFirst()], mBufferY[mMaxDeque.peekFirst()],
+				mGeneration);
+	}
+
+	@Override
+	public synchronized void getMinMaxY(int start, int end, double[] result) {
+		Data data = data();
+		result[0] = Double.POSITIVE_INFINITY;
+		result[1] = Double.NEGATIVE_INFINITY;
+		if (start >= end) {
+			return;
+		}
+		if (data.generation != mGeneration) {
+			// pinned before the window moved to new arrays
+			scanMinMaxY(data, start, end, result);
+			return;
+		}
+		if (mRangeIndex == null) {
+			mRangeIndex = new RangeMinMaxIndex(mBufferY, mOffset + mCount);
+		}
+		mRangeIndex.query(data.y, data.offset + start, data.offset + end, result);
+	}
+
+	/**
+	 * the capacity limits the work per frame, so there is no pyramid
+	 */
+	@Override
+	LodPyramid getLodPyramid() {
+		return null;
+	}
+}
@@ -0,0 +1,678 @@
+package com.jjoe64.graphview;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * loads data points from CSV or TSV text into a series on a background
+ * thread, e.g. a log file of several megabytes. the text is parsed in place
+ * from a byte buffer, no String or object is created per line or number, and
+ * the data points are appended in chunks straight into the primitive storage
+ * of the series. every chunk is published, so the graph fills in while the
+ * rest is still loading.
+ *
+ * <pre>
+ * CsvSeriesLoader loader = new CsvSeriesLoader(new FileInputStream(file), file.length(), series);
+ * loader.setGraphView(graphView);
+ * loader.setListener(listener);
+ * loader.start();
+ * </pre>
+ *
+ * the delimiter is detected from the first line (tab, semicolon, comma or
+ * spaces) unless it is set. a first line that is not numeric is skipped as
+ * header, later lines that are not numeric, empty lines and lines starting
+ * with # are skipped. fields may be quoted with ". the numbers are parsed like
+ * {@link Double#parseDouble(String)} with the same results. the text must be
+ * ASCII or UTF-8.
+ *
+ * as long as the x values are ascending the data points are appended as they
+ * are read. after the first x value that is smaller than the one before, the
+ * rest is collected, sorted and merged with the data points already loaded
+ * when the input ends, then the series is replaced once. the series should
+ * not be changed by others while it is loading. a
+ * {@link MappedGraphViewSeries} cannot be replaced, it only takes ascending
+ * input.
+ */
+public class CsvSeriesLoader implements Runnable {
+	/**
+	 * all methods are called on the loading thread
+	 */
+	public interface Listener {
+		/**
+		 * called after every chunk of data points, see
+		 * {@link CsvSeriesLoader#getBytesRead()},
+		 * {@link CsvSeriesLoader#getPointCount()} and
+		 * {@link CsvSeriesLoader#getPointsPerSecond()}
+		 */
+		void onProgress(CsvSeriesLoader loader);
+
+		/**
+		 * called once when the input ended or the loading was cancelled, see
+		 * {@link CsvSeriesLoader#isCancelled()}
+		 */
+		void onFinished(CsvSeriesLoader loader);
+
+		/**
+		 * called once if the input could not be read or the series did not
+		 * take the data points, instead of
+		 * {@link #onFinished(CsvSeriesLoader)}. the data points read until
+		 * then stay in the series.
+		 *
+		 * @param e
+		 *            an IOException of the input, or a RuntimeException of
+		 *            the series, e.g. an UnsupportedOperationException if
+		 *            unsorted input is loaded into a
+		 *            {@link MappedGraphViewSeries}
+		 */
+		void onError(CsvSeriesLoader loader, Exception e);
+	}
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+	/** powers of ten that are exact doubles */
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+			1e19, 1e20, 1e21, 1e22 };
+	/** 2^53, larger mantissas are not exact doubles */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private final InputStream mInput;
+	private final long mTotalBytes;
+	private final GraphViewSeries mSeries;
+	private GraphView mGraphView;
+	private Listener mListener;
+	private int mColumnX = 0;
+	private int mColumnY = 1;
+	private byte mDelimiter;
+	private int mChunkSize = DEFAULT_CHUNK_SIZE;
+
+	private Thread mThread;
+	private volatile boolean mCancelled;
+	private volatile boolean mFinished;
+	private volatile long mBytesRead;
+	private volatile int mPointCount;
+	private volatile int mSkippedLines;
+	private volatile boolean mSorted = true;
+	private volatile long mStartNanos;
+	private volatile long mElapsedNanos;
+
+	/** data points not yet appended to the series */
+	private double[] mXs;
+	private double[] mYs;
+	private int mCount;
+	private double mLastX;
+	private boolean mHeaderChecked;
+	/** set by parseDouble */
+	private boolean mParsed;
+	private char[] mFallbackChars = new char[64];
+
+	/**
+	 * @param input
+	 *            CSV or TSV text, closed when the loading ends
+	 * @param totalBytes
+	 *            length of the input for the progress, or -1 if unknown
+	 * @param series
+	 *            receives the data points
+	 */
+	public CsvSeriesLoader(InputStream input, long totalBytes, GraphViewSeries series) {
+		mInput = input;
+		mTotalBytes = totalBytes;
+		mSeries = series;
+	}
+
+	/**
+	 * @param graphView
+	 *            redrawn after every chunk, the series should be one of its
+	 *            series. null for none
+	 */
+	public void setGraphView(GraphView graphView) {
+		mGraphView = graphView;
+	}
+
+	public void setListener(Listener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * @param x
+	 *            index of the column with the x values, default 0
+	 * @param y
+	 *            index of the column with the y values, default 1
+	 */
+	public void setColumns(int x, int y) {
+		if (x < 0 || y < 0) {
+			throw new IllegalArgumentException("columns must not be negative");
+		}
+		mColumnX = x;
+		mColumnY = y;
+	}
+
+	/**
+	 * @param delimiter
+	 *            an ASCII character that separates the columns, ' ' for runs
+	 *            of spaces, or 0 to detect it from the first line (default)
+	 */
+	public void setDelimiter(char delimiter) {
+		if (delimiter > 127) {
+			throw new IllegalArgumentException("delimiter must be an ASCII character");
+		}
+		mDelimiter = (byte) delimiter;
+	}
+
+	/**
+	 * @param chunkSize
+	 *            number of data points that are appended and published at
+	 *            once, default 16384
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunk size must be positive");
+		}
+		mChunkSize = chunkSize;
+	}
+
+	/**
+	 * starts loading on a new thread. {@link #run()} can be used instead to
+	 * load on an own thread or executor.
+	 */
+	public synchronized void start() {
+		if (mThread != null) {
+			throw new IllegalStateException("loader was already started");
+		}
+		mThread = new Thread(this, "GraphView CSV loader");
+		mThread.setDaemon(true);
+		mThread.start();
+	}
+
+	/**
+	 * stops loading after the current chunk. data points that are already in
+	 * the series stay, unsorted ones that were not merged yet are dropped.
+	 */
+	public synchronized void cancel() {
+		mCancelled = true;
+		if (mThread != null) {
+			mThread.interrupt();
+		}
+	}
+
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+
+	public boolean isFinished() {
+		return mFinished;
+	}
+
+	/**
+	 * @return bytes of the input read so far
+	 */
+	public long getBytesRead() {
+		return mBytesRead;
+	}
+
+	/**
+	 * @return length of the input, -1 if unknown
+	 */
+	public long getTotalBytes() {
+		return mTotalBytes;
+	}
+
+	/**
+	 * @return progress from 0 to 1, -1 if the length of the input is unknown
+	 */
+	public float getProgress() {
+		if (mTotalBytes <= 0) {
+			return mFinished ? 1 : -1;
+		}
+		return Math.min(1f, (float) mBytesRead / mTotalBytes);
+	}
+
+	/**
+	 * @return data points parsed so far
+	 */
+	public int getPointCount() {
+		return mPointCount;
+	}
+
+	/**
+	 * @return lines that were not numeric, without the header, empty lines
+	 *         and comments
+	 */
+	public int getSkippedLines() {
+		return mSkippedLines;
+	}
+
+	/**
+	 * @return false once an x value was smaller than the one before
+	 */
+	public boolean isSorted() {
+		return mSorted;
+	}
+
+	/**
+	 * @return time spent loading so far, or in total once finished
+	 */
+	public long getElapsedNanos() {
+		if (mFinished || mStartNanos == 0) {
+			return mElapsedNanos;
+		}
+		return System.nanoTime() - mStartNanos;
+	}
+
+	public double getPointsPerSecond() {
+		long elapsed = getElapsedNanos();
+		return elapsed > 0 ? mPointCount * 1e9 / elapsed : 0;
+	}
+
+	public double getBytesPerSecond() {
+		long elapsed = getElapsedNanos();
+		return elapsed > 0 ? mBytesRead * 1e9 / elapsed : 0;
+	}
+
+	/**
+	 * loads the input on the calling thread
+	 */
+	public void run() {
+		mStartNanos = System.nanoTime();
+		mXs = new double[mChunkSize];
+		mYs = new double[mChunkSize];
+		mCount = 0;
+		try {
+			mLastX = mSeries.size() > 0 ? mSeries.getX(mSeries.size() - 1) : Double.NEGATIVE_INFINITY;
+			try {
+				read();
+			} finally {
+				mInput.close();
+			}
+			if (!mCancelled) {
+				if (mSorted) {
+					flush();
+				} else {
+					mergeUnsorted();
+				}
+			}
+		} catch (IOException e) {
+			fail(e);
+			return;
+		} catch (RuntimeException e) {
+			// e.g. the series rejected the data, the thread would die silently
+			fail(e);
+			return;
+		}
+		finish();
+		if (mListener != null) {
+			mListener.onFinished(this);
+		}
+	}
+
+	private void fail(Exception e) {
+		finish();
+		if (mListener != null) {
+			mListener.onError(this, e);
+		}
+	}
+
+	private void finish() {
+		mElapsedNanos = System.nanoTime() - mStartNanos;
+		mFinished = true;
+		mXs = null;
+		mYs = null;
+	}
+
+	/**
+	 * splits the input into lines, a line that does not fit into the buffer
+	 * grows it
+	 */
+	private void read() throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int start = 0;
+		int end = 0;
+		boolean eof = false;
+		while (!mCancelled) {
+			int newline = start;
+			while (newline < end && buffer[newline] != '\n') {
+				newline++;
+			}
+			if (newline < end) {
+				parseLine(buffer, start, newline);
+				start = newline + 1;
+				continue;
+			}
+			if (eof) {
+				if (start < end) {
+					parseLine(buffer, start, end);
+				}
+				return;
+			}
+			// keep the incomplete line and read more
+			if (start > 0) {
+				System.arraycopy(buffer, start, buffer, 0, end - start);
+				end -= start;
+				start = 0;
+			} else if (end == buffer.length) {
+				byte[] grown = new byte[buffer.length * 2];
+				System.arraycopy(buffer, 0, grown, 0, end);
+				buffer = grown;
+			}
+			int read = mInput.read(buffer, end, buffer.length - end);
+			if (read < 0) {
+				eof = true;
+			} else {
+				end += read;
+				mBytesRead += read;
+			}
+		}
+	}
+
+	private void parseLine(byte[] buffer, int start, int end) {
+		if (end > start && buffer[end - 1] == '\r') {
+			end--;
+		}
+		while (start < end && (buffer[start] == ' ' || buffer[start] == '\t')) {
+			start++;
+		}
+		if (start == end || buffer[start] == '#') {
+			return;
+		}
+		if (mDelimiter == 0) {
+			mDelimiter = detectDelimiter(buffer, start, end);
+		}
+
+		// field bounds of the x and y columns
+		int xStart = -1, xEnd = -1, yStart = -1, yEnd = -1;
+		int column = 0;
+		int lastColumn = Math.max(mColumnX, mColumnY);
+		int fieldStart = start;
+		boolean quoted = false;
+		for (int i = start; i <= end; i++) {
+			byte b = i < end ? buffer[i] : mDelimiter;
+			if (b == '"') {
+				quoted = !quoted;
+			} else if (b == mDelimiter && (!quoted || i == end)) {
+				if (column == mColumnX) {
+					xStart = fieldStart;
+					xEnd = i;
+				}
+				if (column == mColumnY) {
+					yStart = fieldStart;
+					yEnd = i;
+				}
+				if (++column > lastColumn) {
+					break;
+				}
+				if (mDelimiter == ' ') {
+					while (i + 1 < end && buffer[i + 1] == ' ') {
+						i++;
+					}
+				}
+				fieldStart = i + 1;
+			}
+		}
+
+		double x = 0, y = 0;
+		boolean valid = xStart >= 0 && yStart >= 0;
+		if (valid) {
+			x = parseDouble(buffer, xStart, xEnd);
+			valid = mParsed && !Double.isNaN(x);
+		}
+		if (valid) {
+			y = parseDouble(buffer, yStart, yEnd);
+			valid = mParsed;
+		}
+		boolean first = !mHeaderChecked;
+		mHeaderChecked = true;
+		if (!valid) {
+			if (!first) {
+				mSkippedLines++;
+			}
+			return;
+		}
+		append(x, y);
+	}
+
+	private static byte detectDelimiter(byte[] buffer, int start, int end) {
+		boolean semicolon = false, comma = false;
+		for (int i = start; i < end; i++) {
+			byte b = buffer[i];
+			if (b == '\t') {
+				return '\t';
+			}
+			semicolon |= b == ';';
+			comma |= b == ',';
+		}
+		return semicolon ? (byte) ';' : comma ? (byte) ',' : (byte) ' ';
+	}
+
+	private void append(double x, double y) {
+		if (mSorted && x < mLastX) {
+			// everything before is ascending, the rest is sorted in the end
+			flush();
+			mSorted = false;
+		}
+		if (mCount == mXs.length) {
+			if (mSorted) {
+				flush();
+			} else {
+				double[] grownX = new double[mXs.length * 2];
+				double[] grownY = new double[grownX.length];
+				System.arraycopy(mXs, 0, grownX, 0, mCount);
+				System.arraycopy(mYs, 0, grownY, 0, mCount);
+				mXs = grownX;
+				mYs = grownY;
+			}
+		}
+		mXs[mCount] = x;
+		mYs[mCount] = y;
+		mCount++;
+		mLastX = x;
+		mPointCount++;
+		if (!mSorted && mPointCount % mChunkSize == 0 && mListener != null) {
+			mListener.onProgress(this);
+		}
+	}
+
+	/**
+	 * appends and publishes the collected ascending data points
+	 */
+	private void flush() {
+		if (mCount == 0) {
+			return;
+		}
+		mSeries.addAll(mXs, mYs, 0, mCount);
+		mCount = 0;
+		if (mGraphView != null) {
+			mGraphView.notifyDataChanged();
+		}
+		if (mListener != null) {
+			mListener.onProgress(this);
+		}
+	}
+
+	/**
+	 * sorts the data points collected after the input became unsorted, merges
+	 * them with the series and replaces its data at once
+	 */
+	private void mergeUnsorted() {
+		int count = mCount;
+		double[] tempX = new double[count];
+		double[] tempY = new double[count];
+		sort(mXs, mYs, tempX, tempY, 0, count);
+
+		mSeries.pin();
+		double[] xs, ys;
+		int total;
+		try {
+			int loaded = mSeries.size();
+			total = loaded + count;
+			xs = new double[total];
+			ys = new double[total];
+			int i = 0, j = 0;
+			for (int k = 0; k < total; k++) {
+				// data points loaded first stay first among equal x values
+				if (j == count || (i < loaded && mSeries.getX(i) <= mXs[j])) {
+					xs[k] = mSeries.getX(i);
+					ys[k] = mSeries.getY(i);
+					i++;
+				} else {
+					xs[k] = mXs[j];
+					ys[k] = mYs[j];
+					j++;
+				}
+			}
+		} finally {
+			mSeries.unpin();
+		}
+		mXs = null;
+		mYs = null;
+		mCount = 0;
+		// one snapshot swap, readers never see an empty series
+		mSeries.replaceAll(xs, ys, total);
+		if (mGraphView != null) {
+			mGraphView.notifyDataChanged();
+		}
+		if (mListener != null) {
+			mListener.onProgress(this);
+		}
+	}
+
+	/**
+	 * stable merge sort of the data points by x. runs that are already in
+	 * order are not merged, so mostly sorted input takes about linear time.
+	 */
+	private static void sort(double[] xs, double[] ys, double[] tempX, double[] tempY, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sort(xs, ys, tempX, tempY, from, middle);
+		sort(xs, ys, tempX, tempY, middle, to);
+		if (xs[middle - 1] <= xs[middle]) {
+			return;
+		}
+		System.arraycopy(xs, from, tempX, from, middle - from);
+		System.arraycopy(ys, from, tempY, from, middle - from);
+		int i = from, j = middle, k = from;
+		while (i < middle && j < to) {
+			if (tempX[i] <= xs[j]) {
+				xs[k] = tempX[i];
+				ys[k++] = tempY[i++];
+			} else {
+				xs[k] = xs[j];
+				ys[k++] = ys[j++];
+			}
+		}
+		while (i < middle) {
+			xs[k] = tempX[i];
+			ys[k++] = tempY[i++];
+		}
+	}
+
+	/**
+	 * parses a number without allocating. decimals with up to 15 significant
+	 * digits and small exponents are computed exactly with one multiplication
+	 * or division, anything else is passed to Double.parseDouble.
+	 *
+	 * @return the number, mParsed is false if the field is not a number
+	 */
+	private double parseDouble(byte[] buffer, int start, int end) {
+		while (start < end && (buffer[start] == ' ' || buffer[start] == '\t' || buffer[start] == '"')) {
+			start++;
+		}
+		while (end > start && (buffer[end - 1] == ' ' || buffer[end - 1] == '\t' || buffer[end - 1] == '"')) {
+			end--;
+		}
+		mParsed = false;
+		if (start == end) {
+			return 0;
+		}
+
+		int i = start;
+		boolean negative = buffer[i] == '-';
+		if (negative || buffer[i] == '+') {
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+		boolean exact = true;
+		while (i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+			anyDigit = true;
+			if (mantissa != 0 || buffer[i] != '0') {
+				if (++digits > 18) {
+					exact = false;
+					break;
+				}
+				mantissa = mantissa * 10 + (buffer[i] - '0');
+			}
+			i++;
+		}
+		if (exact && i < end && buffer[i] == '.') {
+			i++;
+			while (i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+				anyDigit = true;
+				if (mantissa != 0 || buffer[i] != '0') {
+					if (++digits > 18) {
+						exact = false;
+						break;
+					}
+					mantissa = mantissa * 10 + (buffer[i] - '0');
+				}
+				exponent--;
+				i++;
+			}
+		}
+		if (exact && anyDigit && i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+			i++;
+			boolean negativeExponent = i < end && buffer[i] == '-';
+			if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+				i++;
+			}
+			int value = 0;
+			boolean anyExponentDigit = false;
+			while (i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+				anyExponentDigit = true;
+				if (value < 10000) {
+					value = value * 10 + (buffer[i] - '0');
+				}
+				i++;
+			}
+			exact = anyExponentDigit;
+			exponent += negativeExponent ? -value : value;
+		}
+		if (exact && anyDigit && i == end && mantissa < MAX_EXACT_MANTISSA) {
+			double value;
+			if (mantissa == 0) {
+				value = 0;
+			} else if (exponent < 0 && exponent >= -22) {
+				value = mantissa / POW10[-exponent];
+			} else if (exponent >= 0 && exponent <= 22) {
+				value = mantissa * POW10[exponent];
+			} else {
+				return parseFallback(buffer, start, end);
+			}
+			mParsed = true;
+			return negative ? -value : value;
+		}
+		return parseFallback(buffer, start, end);
+	}
+
+	/**
+	 * long mantissas, large exponents, NaN, Infinity and hex
+	 */
+	private double parseFallback(byte[] buffer, int start, int end) {
+		int length = end - start;
+		if (length > mFallbackChars.length) {
+			mFallbackChars = new char[length];
+		}
+		for (int i = 0; i < length; i++) {
+			mFallbackChars[i] = (char) (buffer[start + i] & 0xff);
+		}
+		try {
+			double value = Double.parseDouble(new String(mFallbackChars, 0, length));
+			mParsed = true;
+			return value;
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
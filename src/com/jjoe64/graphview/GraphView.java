@@ -2,8 +2,9 @@ package com.jjoe64.graphview;
 
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.Context;
 import android.graphics.Canvas;
@@ -22,12 +23,16 @@ import android.widget.Scroller;
 
 import com.jjoe64.graphs.LineGraphView;
 import com.jjoe64.graphview.GraphViewSeries.GraphViewData;
+import com.jjoe64.graphview.compatible.FrameScheduler;
 import com.jjoe64.graphview.compatible.ScaleGestureDetector;
+import com.jjoe64.graphview.core.AxisLabels;
+import com.jjoe64.graphview.core.AxisTicks;
+import com.jjoe64.graphview.core.Viewport;
 
 /**
  * GraphView is a Android View for creating zoomable and scrollable graphs. This
  * is the abstract base class for all graphs. Extend this class and implement
- * {@link #drawSeries(Canvas, float, float, float, double, double, double, double, float)}
+ * {@link #drawSeries(Canvas, int, GraphViewSeries, int, int, float, float, float, double, double, double, double, float)}
  * to display a custom graph. Use {@link LineGraphView} for creating a line
  * chart.
  * 
@@ -69,11 +74,7 @@ abstract public class GraphView extends LinearLayout {
 	}
 
 	private boolean canScroll() {
-		final double diffX = getMaxX(true) -getMinX(true);
-		if (scrollable && viewportSize < diffX) {
-			return true;
-		}
-		return false;
+		return scrollable && mViewport.canScroll(getMinX(true), getMaxX(true));
 	}
 
 	private class GraphViewContentView extends View {
@@ -85,17 +86,26 @@ abstract public class GraphView extends LinearLayout {
 		protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
 			super.onLayout(changed, left, top, right, bottom);
 			if (changed){
-				mScale = (right-left) / viewportSize;
+				mScale = (right-left) / mViewport.getSize();
 			}
 		}
 
 		public void onViewportChanged(){
+			if (updateScale()) {
+				requestUpdate(UPDATE_CONTENT);
+			}
+		}
+
+		/**
+		 * @return false if there is no viewport or the view has no size yet
+		 */
+		boolean updateScale() {
 			synchronized (GraphView.this) {
-				if (viewportSize>0 && getWidth() > 0){
-					mScale = getWidth() / viewportSize;
-					horlabels = null;
-					this.invalidate();
+				if (mViewport.getSize()>0 && getWidth() > 0){
+					mScale = getWidth() / mViewport.getSize();
+					return true;
 				}
+				return false;
 			}
 		}
 		
@@ -116,8 +126,14 @@ abstract public class GraphView extends LinearLayout {
 				int x = mScroller.getCurrX();
 				onMoveGesture((float) (mLastScroll - x));
 				mLastScroll = x;
+				TileCache tileCache = mTileCache;
+				if (tileCache != null && mViewport.isSet()) {
+					// render the tiles the fling will reach ahead
+					double finalViewportStart = getMinX(true) + mScroller.getFinalX() / mScale;
+					tileCache.prefetch(mViewport.getStart(), mViewport.getSize(), finalViewportStart);
+				}
 				// Keep on drawing until the animation has finished.
-				postInvalidate();
+				requestUpdate(UPDATE_CONTENT);
 			} 
 			
 		}
@@ -128,81 +144,174 @@ abstract public class GraphView extends LinearLayout {
 		@Override
 		protected void onDraw(Canvas canvas) {
 			synchronized (GraphView.this) {
-				computeScroll();
+				synchronized (mDrawLock) {
+					final RenderMetrics metrics = mMetrics;
+					final long frameStart = metrics != null ? System.nanoTime() : 0;
+					// the frame reads the data as it is now, producers keep appending
+					pinSeries();
+					try {
+						computeScroll();
+
+						// normal
+						paint.setStrokeWidth(0);
+
+						float border = GraphViewConfig.BORDER;
+						float horstart = 0;
+						float height = getHeight();
+						float width = getWidth() - 1;
+						float graphheight = height - (2 * border);
+						graphwidth = width;
+
+						long time = frameStart;
+						updateLabelFormat();
+						if (horlabels == null) {
+							updateHorAxis(graphwidth);
+						}
+						if (verlabels == null) {
+							updateVerAxis(graphheight);
+						}
+						if (metrics != null) {
+							time = metrics.record(RenderMetrics.Phase.LABELS, time);
+						}
+
+						// vertical lines
+						paint.setTextAlign(Align.LEFT);
+						paint.setColor(Color.DKGRAY);
+						if (verlabels != null) {
+							int vers = verlabels.length - 1;
+							for (int i = 0; i < verlabels.length; i++) {
+								float y = ((graphheight / vers) * i) + border;
+								canvas.drawLine(horstart, y, width, y, paint);
+							}
+						} else {
+							for (int i = 0; i < mVerAxis.getCount(); i++) {
+								float y = border + graphheight - mVerAxis.getPosition(i, graphheight);
+								canvas.drawLine(horstart, y, width, y, paint);
+							}
+						}
 
-				// normal
-				paint.setStrokeWidth(0);
+						// horizontal labels + lines
+						if (horlabels != null) {
+							int hors = horlabels.length - 1;
+							for (int i = 0; i < horlabels.length; i++) {
+								paint.setColor(Color.DKGRAY);
+								float x = ((graphwidth / hors) * i) + horstart;
+								canvas.drawLine(x, height - border, x, border, paint);
+								paint.setTextAlign(Align.CENTER);
+								if (i == horlabels.length - 1)
+									paint.setTextAlign(Align.RIGHT);
+								if (i == 0)
+									paint.setTextAlign(Align.LEFT);
+								paint.setColor(Color.WHITE);
+								canvas.drawText(horlabels[i], x, height - 4, paint);
+							}
+						} else {
+							// the ticks move with the data, labels near the edges are kept inside
+							float halfLabel = GraphViewConfig.VERTICAL_LABEL_WIDTH / 2;
+							for (int i = 0; i < mHorAxis.getCount(); i++) {
+								float x = mHorAxis.getPosition(i, graphwidth) + horstart;
+								paint.setColor(Color.DKGRAY);
+								canvas.drawLine(x, height - border, x, border, paint);
+								if (x < horstart + halfLabel) {
+									paint.setTextAlign(Align.LEFT);
+								} else if (x > horstart + graphwidth - halfLabel) {
+									paint.setTextAlign(Align.RIGHT);
+								} else {
+									paint.setTextAlign(Align.CENTER);
+								}
+								paint.setColor(Color.WHITE);
+								canvas.drawText(mHorAxis.getLabel(i), x, height - 4, paint);
+							}
+						}
 
-				float border = GraphViewConfig.BORDER;
-				float horstart = 0;
-				float height = getHeight();
-				float width = getWidth() - 1;
-				float graphheight = height - (2 * border);
-				graphwidth = width;
+						paint.setTextAlign(Align.CENTER);
+						canvas.drawText(title, (graphwidth / 2) + horstart, border - 4, paint);
 
-				if (horlabels == null) {
-					horlabels = generateHorlabels(graphwidth);
-				}
-				if (verlabels == null) {
-					verlabels = generateVerlabels(graphheight);
-				}
+						if (graphSeries.size() > 0) {
+							double maxY = getMaxY();
+							double minY = getMinY();
+							double diffY = maxY - minY;
+							double maxX = getMaxX(false);
+							double minX = getMinX(false);
+							double diffX = maxX - minX;
 
-				// vertical lines
-				paint.setTextAlign(Align.LEFT);
-				int vers = verlabels.length - 1;
-				for (int i = 0; i < verlabels.length; i++) {
-					paint.setColor(Color.DKGRAY);
-					float y = ((graphheight / vers) * i) + border;
-					canvas.drawLine(horstart, y, width, y, paint);
-				}
+							if (maxY != minY) {
+								paint.setStrokeCap(Paint.Cap.ROUND);
+								paint.setStrokeWidth(3);
 
-				// horizontal labels + lines
-				int hors = horlabels.length - 1;
-				for (int i = 0; i < horlabels.length; i++) {
-					paint.setColor(Color.DKGRAY);
-					float x = ((graphwidth / hors) * i) + horstart;
-					canvas.drawLine(x, height - border, x, border, paint);
-					paint.setTextAlign(Align.CENTER);
-					if (i == horlabels.length - 1)
-						paint.setTextAlign(Align.RIGHT);
-					if (i == 0)
-						paint.setTextAlign(Align.LEFT);
-					paint.setColor(Color.WHITE);
-					canvas.drawText(horlabels[i], x, height - 4, paint);
-				}
+								if (metrics != null) {
+									time = System.nanoTime();
+								}
+								if (mRenderer != null) {
+									// the worker prepares the next frame, draw the newest finished one
+									mRenderer.request(graphSeries, mViewport.getStart(), mViewport.getSize(), graphwidth, graphheight, border, minX, minY, diffX, diffY, horstart);
+									BackgroundRenderer.Frame frame = mRenderer.acquireFrame();
+									for (int i = 0; i < frame.seriesCount; i++) {
+										if (frame.vertexCounts[i] > 0) {
+											paint.setColor(frame.series[i].color);
+											drawPreparedSeries(canvas, frame.series[i].color, frame.vertices[i], frame.vertexCounts[i], graphwidth, graphheight, border, horstart);
+											if (metrics != null) {
+												time = metrics.recordSeries(i, time, frame.inputCounts[i], frame.vertexCounts[i]);
+											}
+										}
+									}
+								} else if (mTileCache != null && mViewport.isSet()) {
+									mTileCache.draw(canvas, graphSeries, mViewport.getStart(), mViewport.getSize(), graphwidth, height, border, minY, diffY, horstart);
+									if (metrics != null) {
+										time = metrics.record(RenderMetrics.Phase.SERIES, time);
+									}
+								} else {
+									for (int i = 0; i < graphSeries.size(); i++) {
+										GraphViewSeries series = graphSeries.get(i);
+										if (series.isVisible()) {
+											paint.setColor(series.color);
+											boolean inViewport = _values(i, mRange);
+											if (metrics != null) {
+												time = metrics.record(RenderMetrics.Phase.SLICING, time);
+											}
+											if (inViewport) {
+												mDrawnPoints = -1;
+												drawSeries(canvas, series.color, series, mRange[0], mRange[1], graphwidth, graphheight, border, minX, minY, diffX, diffY, horstart);
+												if (metrics != null) {
+													int points = mRange[1] - mRange[0];
+													time = metrics.recordSeries(i, time, points, mDrawnPoints >= 0 ? mDrawnPoints : points);
+												}
+											}
+										}
+									}
+								}
 
-				paint.setTextAlign(Align.CENTER);
-				canvas.drawText(title, (graphwidth / 2) + horstart, border - 4, paint);
-
-				if (graphSeries.size() > 0) {
-					double maxY = getMaxY();
-					double minY = getMinY();
-					double diffY = maxY - minY;
-					double maxX = getMaxX(false);
-					double minX = getMinX(false);
-					double diffX = maxX - minX;
-
-					if (maxY != minY) {
-						paint.setStrokeCap(Paint.Cap.ROUND);
-						paint.setStrokeWidth(3);
-
-						for (int i = 0; i < graphSeries.size(); i++) {
-							if (graphSeries.get(i).isVisible()) {
-								paint.setColor(graphSeries.get(i).color);
-								List<GraphViewData> valuesToDraw = _values(i);
-								if (valuesToDraw != null) {
-									drawSeries(canvas, graphSeries.get(i).color, valuesToDraw, graphwidth, graphheight, border, minX, minY, diffX, diffY, horstart);
+								if (showLegend) {
+									drawLegend(canvas, height, width);
+									if (metrics != null) {
+										time = metrics.record(RenderMetrics.Phase.LEGEND, time);
+									}
 								}
 							}
-						}
 
-						if (showLegend)
-							drawLegend(canvas, height, width);
+						}
+						if (metrics != null) {
+							metrics.endFrame(frameStart);
+						}
+					} finally {
+						unpinSeries();
 					}
-
 				}
 			}
 		}
+		/**
+		 * @see GraphView#getLevelOfDetail(GraphViewSeries, int, int)
+		 */
+		int getLevelOfDetail(GraphViewSeries series, int start, int end) {
+			if (end - start < 2) {
+				return 0;
+			}
+			// pixels per x unit
+			double scale = mViewport.isSet() ? mScale : graphwidth / (getMaxX(false) - getMinX(false));
+			double pixels = (series.getX(end - 1) - series.getX(start)) * scale;
+			return LodPyramid.levelFor(end - start, pixels);
+		}
+
 		public void fling(int velocityX) {
 			double mTotalGraphWidth;
 			mTotalGraphWidth = (getMaxX(true)-getMinX(true)) * mScale;
@@ -210,36 +319,40 @@ abstract public class GraphView extends LinearLayout {
 			int width = (int) mTotalGraphWidth;
 			int right = (int) graphwidth;
 			//convert viewportstart to screen coords
-			final double screenViewPortStart = ((viewportStart - getMinX(true))*mScale);
+			final double screenViewPortStart = ((mViewport.getStart() - getMinX(true))*mScale);
 			mLastScroll = (int) screenViewPortStart;
 		
 			mScroller.fling((int) (screenViewPortStart), 0, velocityX, 0, 0,  width-right, 0, 0);
 
-			invalidate();
+			requestUpdate(UPDATE_CONTENT);
 		}
 
 		
 		private void onMoveGesture(float f) {
+			if (scrollViewport(f)) {
+				requestUpdate(UPDATE_CONTENT | UPDATE_VERLABELS);
+			}
+		}
+
+		/**
+		 * @param f
+		 *            distance in pixels
+		 * @return true if the viewport moved
+		 */
+		boolean scrollViewport(float f) {
 			// view port update
-			if (viewportSize != 0 && graphSeries.size() != 0) {
-				double maxX = getMaxX(true);
-				double minX = getMinX(true);
-				if (viewportStart + viewportSize >= maxX && f < 0) {
-					return;
+			if (mViewport.isSet() && graphSeries.size() != 0) {
+				if (!mViewport.scroll(-f / mScale, getMinX(true), getMaxX(true))) {
+					return false;
 				}
-				viewportStart -= f / mScale;
-				// minimal and maximal view limit
-				if (viewportStart < minX) {
-					viewportStart = minX;
-				} else if (viewportStart + viewportSize > maxX) {
-					viewportStart = maxX - viewportSize;
+				// the ticks move with the data, only the number format may change
+				if (scaleYAxisToViewport) {
+					mLabelFormatDirty = true;
 				}
-				// labels have to be regenerated
-				horlabels = null;
-				verlabels = null;
 				GraphView.this.onViewportChanged(false);
-				viewVerLabels.invalidate();
+				return true;
 			}
+			return false;
 		}
 
 	}
@@ -321,7 +434,6 @@ abstract public class GraphView extends LinearLayout {
 		// first scale
 		if (scalable && scaleDetector != null) {
 			scaleDetector.onTouchEvent(ev);
-			scaleDetector.isInProgress();
 		}
 		
 		if (!canScroll()) {
@@ -350,13 +462,17 @@ abstract public class GraphView extends LinearLayout {
 			mLastMotionX = x;
 			break;
 		case MotionEvent.ACTION_MOVE:
-			// Scroll to follow the motion event
-			final int deltaX = (int) (x - mLastMotionX);
+			// Scroll to follow the motion event, once per frame for all events
+			mPendingScroll += x - mLastMotionX;
 			mLastMotionX = x;
-			mContentView.onMoveGesture(deltaX);
-			mContentView.invalidate();
+			requestUpdate(UPDATE_GESTURES);
 			break;
 		case MotionEvent.ACTION_UP:
+			// the fling starts where the finger left
+			int flags = applyGestures();
+			if (flags != 0) {
+				requestUpdate(flags);
+			}
 			final VelocityTracker velocityTracker = mVelocityTracker;
 			velocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
 			int initialVelocity = (int) velocityTracker.getXVelocity();
@@ -395,25 +511,45 @@ abstract public class GraphView extends LinearLayout {
 		@Override
 		protected void onDraw(Canvas canvas) {
 			synchronized (GraphView.this) {
+				synchronized (mDrawLock) {
+
+					// normal
+					paint.setStrokeWidth(0);
+
+					float border = GraphViewConfig.BORDER;
+					float height = getHeight();
+					float graphheight = height - (2 * border);
+
+					if (verlabels == null) {
+						RenderMetrics metrics = mMetrics;
+						long time = metrics != null ? System.nanoTime() : 0;
+						pinSeries();
+						try {
+							updateLabelFormat();
+							updateVerAxis(graphheight);
+						} finally {
+							unpinSeries();
+						}
+						if (metrics != null) {
+							metrics.record(RenderMetrics.Phase.LABELS, time);
+						}
+					}
 
-				// normal
-				paint.setStrokeWidth(0);
-
-				float border = GraphViewConfig.BORDER;
-				float height = getHeight();
-				float graphheight = height - (2 * border);
-
-				if (verlabels == null) {
-					verlabels = generateVerlabels(graphheight);
-				}
-
-				// vertical labels
-				paint.setTextAlign(Align.LEFT);
-				int vers = verlabels.length - 1;
-				for (int i = 0; i < verlabels.length; i++) {
-					float y = ((graphheight / vers) * i) + border;
+					// vertical labels
+					paint.setTextAlign(Align.LEFT);
 					paint.setColor(Color.WHITE);
-					canvas.drawText(verlabels[i], 0, y, paint);
+					if (verlabels != null) {
+						int vers = verlabels.length - 1;
+						for (int i = 0; i < verlabels.length; i++) {
+							float y = ((graphheight / vers) * i) + border;
+							canvas.drawText(verlabels[i], 0, y, paint);
+						}
+					} else {
+						for (int i = 0; i < mVerAxis.getCount(); i++) {
+							float y = border + graphheight - mVerAxis.getPosition(i, graphheight);
+							canvas.drawText(mVerAxis.getLabel(i), 0, y, paint);
+						}
+					}
 				}
 			}
 		}
@@ -421,24 +557,78 @@ abstract public class GraphView extends LinearLayout {
 	}
 
 	protected Paint paint;
+	/** static labels, null if the labels are generated */
 	private String[] horlabels;
 	private String[] verlabels;
+	/** generated ticks and their cached labels */
+	private final AxisLabels mHorAxis = new AxisLabels();
+	private final AxisLabels mVerAxis = new AxisLabels();
+	private final AxisLabels.Formatter mHorFormatter = new AxisLabels.Formatter() {
+		public String format(double value) {
+			return formatLabel(value, true);
+		}
+	};
+	private final AxisLabels.Formatter mVerFormatter = new AxisLabels.Formatter() {
+		public String format(double value) {
+			return formatLabel(value, false);
+		}
+	};
+	/** id of the label format, part of the key of the cached labels */
+	private final AtomicInteger mLabelFormat = new AtomicInteger();
+	/** the y range changed, the number of fraction digits may change */
+	private boolean mLabelFormatDirty = true;
+	private int mFractionDigits = -1;
 	private String title;
 	private boolean scrollable;
-	private double viewportStart;
-	private double viewportSize;
+	/** visible x range, scrolling and zooming */
+	private final Viewport mViewport = new Viewport();
 	private View viewVerLabels;
 	private ScaleGestureDetector scaleDetector;
 	private boolean scalable;
 	private NumberFormat numberformatter;
 	private List<GraphViewSeries> graphSeries;
+	/** copy of graphSeries for the producer threads, replaced on every change */
+	private volatile GraphViewSeries[] mPublishedSeries = new GraphViewSeries[0];
 	private boolean showLegend = false;
 	private float legendWidth = 120;
 	private LegendAlign legendAlign = LegendAlign.MIDDLE;
 	private boolean manualYAxis;
 	private double manualMaxYValue;
 	private double manualMinYValue;
+	private boolean scaleYAxisToViewport;
 	private GraphViewContentView mContentView;
+	/** prepares the vertices off the UI thread, null if disabled */
+	private BackgroundRenderer mRenderer;
+	/** bitmap tiles of the plot area, null if disabled */
+	private volatile TileCache mTileCache;
+	/**
+	 * held by onDraw inside the GraphView lock and by the tile worker while
+	 * it draws a tile with paint and drawSeries
+	 */
+	final Object mDrawLock = new Object();
+	/** views to invalidate by the next frame, UPDATE_* flags */
+	private static final int UPDATE_CONTENT = 1;
+	private static final int UPDATE_VERLABELS = 2;
+	/** touch events changed the viewport, see applyGestures() */
+	private static final int UPDATE_GESTURES = 4;
+	/** pixels scrolled and zoom factor of the touch events since the last frame */
+	private float mPendingScroll;
+	/** product of the size factors 2 - scale factor of the scale events */
+	private double mPendingSizeFactor = 1;
+	private final AtomicInteger mPendingUpdates = new AtomicInteger();
+	private FrameScheduler mFrameScheduler;
+	private final AtomicInteger mRequestedUpdates = new AtomicInteger();
+	private volatile int mPerformedUpdates;
+	/** measures the frames, null if disabled */
+	private RenderMetrics mMetrics;
+	/** combined bounds of the visible series */
+	private final SeriesBounds mBounds = new SeriesBounds();
+	/** points drawn by the current drawSeries call, -1 if not reported */
+	private int mDrawnPoints;
+	/** series pinned by the current frame */
+	private final List<GraphViewSeries> mPinnedSeries = new ArrayList<GraphViewSeries>();
+	/** [start, end) of the visible data, reused during draw */
+	private final int[] mRange = new int[2];
 
 	/**
 	 * 
@@ -468,6 +658,13 @@ abstract public class GraphView extends LinearLayout {
 
 		mContentView = new GraphViewContentView(context);
 		addView(mContentView, new LayoutParams(LayoutParams.FILL_PARENT, ViewGroup.LayoutParams.FILL_PARENT, 1));
+
+		mFrameScheduler = new FrameScheduler(new Runnable() {
+			@Override
+			public void run() {
+				performUpdate();
+			}
+		});
 		
 		mScroller = new Scroller(getContext());
 		setFocusable(true);
@@ -479,30 +676,16 @@ abstract public class GraphView extends LinearLayout {
 
 	}
 
-	private List<GraphViewData> _values(int idxSeries) {
-		if (viewportStart == 0 && viewportSize == 0) {
-			// all data
-			return graphSeries.get(idxSeries).values;
-		} else {
-			int size = graphSeries.get(idxSeries).values.size();
-
-			GraphViewData dummyData = new GraphViewData(viewportStart, 0);
-			int start = Math.abs(Collections.binarySearch(graphSeries.get(idxSeries).values, dummyData));
-			// series has no values inside current viewport
-			if (start > size) {
-				return null;
-			}
-
-			start = Math.max(start-2, 0);
-
-			dummyData = new GraphViewData(viewportStart + viewportSize, 0);
-			int end = Math.abs(Collections.binarySearch(graphSeries.get(idxSeries).values, dummyData));
-
-			end = Math.min(end+1, size);
-
-			return graphSeries.get(idxSeries).values.subList(start, end);
-
-		}
+	/**
+	 * finds the data of a series that has to be drawn for the current viewport
+	 * 
+	 * @param idxSeries
+	 * @param range
+	 *            receives the index range [start, end) of the data
+	 * @return false if the series has no values inside current viewport
+	 */
+	private boolean _values(int idxSeries, int[] range) {
+		return graphSeries.get(idxSeries).findRange(mViewport.getStart(), mViewport.getSize(), range);
 	}
 
 	protected void onAddSeries(GraphViewSeries series) {
@@ -517,16 +700,39 @@ abstract public class GraphView extends LinearLayout {
 
 	}
 
+	/**
+	 * @param series
+	 * @param count
+	 *            number of data points that were appended to the series
+	 */
+	protected void onAddAllToSeries(GraphViewSeries series, int count) {
+
+	}
+
 	public void addSeries(GraphViewSeries series) {
-		graphSeries.add(series);
+		synchronized (this) {
+			graphSeries.add(series);
+			publishSeries();
+		}
 		onAddSeries(series);
-		mContentView.invalidate();
+		requestUpdate(UPDATE_CONTENT | UPDATE_VERLABELS);
 	}
 
 	public void removeSeries(GraphViewSeries series) {
-		graphSeries.remove(series);
+		synchronized (this) {
+			graphSeries.remove(series);
+			publishSeries();
+		}
 		onRemoveSeries(series);
-		mContentView.invalidate();
+		requestUpdate(UPDATE_CONTENT | UPDATE_VERLABELS);
+	}
+
+	/**
+	 * lets addToSeries and addAllToSeries look up the series without the
+	 * lock, which onDraw holds for a whole frame
+	 */
+	private void publishSeries() {
+		mPublishedSeries = graphSeries.toArray(new GraphViewSeries[graphSeries.size()]);
 	}
 
 	public void toggleSeries(GraphViewSeries series) {
@@ -534,23 +740,186 @@ abstract public class GraphView extends LinearLayout {
 		if (graphSeries.contains(series)) {
 			boolean visible = series.isVisible();
 			series.setVisible(!visible);
-			horlabels = null;
-			this.mContentView.invalidate();
+			requestUpdate(UPDATE_CONTENT | UPDATE_VERLABELS);
 		}
 	}
 
-	public synchronized void addToSeries(int index, GraphViewData data) {
-		if (graphSeries.size()==0){
-			GraphViewSeries series = new GraphViewSeries(new GraphViewData[]{data});
-			this.addSeries(series);
-		} else {
-			GraphViewSeries series = graphSeries.get(index);
-			series.add(data);
-			onAddToSeries(series, data);
-			horlabels = null;
-			verlabels = null;
-			this.mContentView.invalidate();
-		}		
+	/**
+	 * appends a data point to a series. can be called from any thread, it
+	 * only waits for other writers of the series, never for a frame that is
+	 * drawn.
+	 * 
+	 * @param index
+	 *            index of the series. if there is no series yet, a new one is
+	 *            created.
+	 * @param data
+	 */
+	public void addToSeries(int index, GraphViewData data) {
+		GraphViewSeries[] published = mPublishedSeries;
+		if (published.length == 0) {
+			synchronized (this) {
+				if (graphSeries.size()==0){
+					GraphViewSeries series = new GraphViewSeries(new GraphViewData[]{data});
+					this.addSeries(series);
+					return;
+				}
+				published = mPublishedSeries;
+			}
+		}
+		GraphViewSeries series = published[index];
+		series.add(data);
+		onAddToSeries(series, data);
+		notifyDataChanged();
+	}
+
+	/**
+	 * appends a batch of data points to a series. the labels are regenerated
+	 * and the graph is redrawn only once per batch.
+	 * 
+	 * @param index
+	 *            index of the series. if there is no series yet, a new one is
+	 *            created.
+	 * @param xs
+	 *            x values, sorted ascending
+	 * @param ys
+	 *            y values
+	 * @param off
+	 *            index of the first data point in xs and ys
+	 * @param len
+	 *            number of data points
+	 * @see GraphViewSeries#addAll(double[], double[], int, int)
+	 */
+	public void addAllToSeries(int index, double[] xs, double[] ys, int off, int len) {
+		GraphViewSeries[] published = mPublishedSeries;
+		if (published.length == 0) {
+			synchronized (this) {
+				if (graphSeries.size()==0){
+					GraphViewSeries series = new GraphViewSeries();
+					series.addAll(xs, ys, off, len);
+					this.addSeries(series);
+					return;
+				}
+				published = mPublishedSeries;
+			}
+		}
+		GraphViewSeries series = published[index];
+		series.addAll(xs, ys, off, len);
+		onAddAllToSeries(series, len);
+		notifyDataChanged();
+	}
+
+	/**
+	 * redraws the graph and its labels with the next frame. call
+	 * this after the data of a series was changed directly, e.g. by
+	 * {@link CsvSeriesLoader}. can be called from any thread.
+	 */
+	public void notifyDataChanged() {
+		requestUpdate(UPDATE_CONTENT | UPDATE_VERLABELS);
+	}
+
+	/**
+	 * marks views as dirty, they are invalidated once by the next display
+	 * frame. can be called from any thread, requests made before that frame
+	 * are coalesced.
+	 * 
+	 * @param flags
+	 *            UPDATE_* flags
+	 */
+	private void requestUpdate(int flags) {
+		mRequestedUpdates.incrementAndGet();
+		int pending;
+		do {
+			pending = mPendingUpdates.get();
+		} while (!mPendingUpdates.compareAndSet(pending, pending | flags));
+		mFrameScheduler.schedule();
+	}
+
+	/**
+	 * called by the frame scheduler on the main thread
+	 */
+	private void performUpdate() {
+		int flags = mPendingUpdates.getAndSet(0);
+		if ((flags & UPDATE_GESTURES) != 0) {
+			flags |= applyGestures();
+		}
+		if ((flags & (UPDATE_CONTENT | UPDATE_VERLABELS)) == 0) {
+			return;
+		}
+		mPerformedUpdates++;
+		if ((flags & UPDATE_CONTENT) != 0) {
+			mContentView.invalidate();
+		}
+		if ((flags & UPDATE_VERLABELS) != 0) {
+			viewVerLabels.invalidate();
+		}
+	}
+
+	/**
+	 * moves and zooms the viewport once for all touch events since the last
+	 * frame. called on the main thread.
+	 * 
+	 * @return UPDATE_* flags of the views that have to be redrawn
+	 */
+	private int applyGestures() {
+		int flags = 0;
+		if (mPendingSizeFactor != 1) {
+			double sizeFactor = mPendingSizeFactor;
+			mPendingSizeFactor = 1;
+			mViewport.resize(sizeFactor, getMinX(true), getMaxX(true));
+			mLabelFormatDirty = true;
+			mContentView.updateScale();
+			onViewportChanged(false);
+			flags |= UPDATE_CONTENT | UPDATE_VERLABELS;
+		}
+		if (mPendingScroll != 0) {
+			float scroll = mPendingScroll;
+			mPendingScroll = 0;
+			if (mContentView.scrollViewport(scroll)) {
+				flags |= UPDATE_CONTENT | UPDATE_VERLABELS;
+			}
+		}
+		return flags;
+	}
+
+	/**
+	 * @return number of redraws that were requested, by data changes, scrolling
+	 *         and zooming
+	 */
+	public int getRequestedUpdateCount() {
+		return mRequestedUpdates.get();
+	}
+
+	/**
+	 * @return number of frames that performed at least one requested redraw
+	 */
+	public int getPerformedUpdateCount() {
+		return mPerformedUpdates;
+	}
+
+	/**
+	 * @return number of requested redraws that were merged into the redraw
+	 *         of a frame, including the ones still pending
+	 */
+	public int getCoalescedUpdateCount() {
+		return getRequestedUpdateCount() - getPerformedUpdateCount();
+	}
+
+	/**
+	 * pins all series for the current thread, see {@link GraphViewSeries#pin()}
+	 */
+	private void pinSeries() {
+		mPinnedSeries.clear();
+		mPinnedSeries.addAll(graphSeries);
+		for (int i = 0; i < mPinnedSeries.size(); i++) {
+			mPinnedSeries.get(i).pin();
+		}
+	}
+
+	private void unpinSeries() {
+		for (int i = 0; i < mPinnedSeries.size(); i++) {
+			mPinnedSeries.get(i).unpin();
+		}
+		mPinnedSeries.clear();
 	}
 
 	public GraphViewData getData(int seriesIndex, int dataIndex) {
@@ -558,11 +927,11 @@ abstract public class GraphView extends LinearLayout {
 	}
 
 	public GraphViewData getLastData(int seriesIndex) {
-		return graphSeries.get(seriesIndex).values.get(getSeriesSize(seriesIndex) - 1);
+		return getData(seriesIndex, getSeriesSize(seriesIndex) - 1);
 	}
 
 	public int getSeriesSize(int seriesIndex) {
-		return graphSeries.get(seriesIndex).values.size();
+		return graphSeries.get(seriesIndex).size();
 	}
 
 	protected void drawLegend(Canvas canvas, float height, float width) {
@@ -598,11 +967,70 @@ abstract public class GraphView extends LinearLayout {
 		}
 	}
 
-	abstract public void drawSeries(Canvas canvas, int color, List<GraphViewData> values, float graphwidth, float graphheight, float border, double minX, double minY, double diffX, double diffY,
+	/**
+	 * picks the level of detail that fits the current zoom: at level k a
+	 * bucket of 2^k data points is drawn per pixel column. 0 means every data
+	 * point is drawn. can be used in
+	 * {@link #drawSeries(Canvas, int, GraphViewSeries, int, int, float, float, float, double, double, double, double, float)}.
+	 * 
+	 * @param series
+	 * @param start
+	 *            first visible data point
+	 * @param end
+	 *            last visible data point (exclusive)
+	 * @return level of detail
+	 */
+	protected int getLevelOfDetail(GraphViewSeries series, int start, int end) {
+		return mContentView.getLevelOfDetail(series, start, end);
+	}
+
+	/**
+	 * draws a series whose vertices were prepared by the background renderer,
+	 * see {@link #setRenderInBackground(boolean)}. the default implementation
+	 * connects the vertices with straight lines, subclasses that draw
+	 * something else than lines in drawSeries override it.
+	 * 
+	 * @param canvas
+	 * @param color
+	 * @param vertices
+	 *            x, y pairs in screen coordinates, already downsampled
+	 * @param count
+	 *            number of vertices
+	 * @param graphwidth
+	 * @param graphheight
+	 * @param border
+	 * @param horstart
+	 */
+	protected void drawPreparedSeries(Canvas canvas, int color, float[] vertices, int count, float graphwidth, float graphheight, float border, float horstart) {
+		for (int i = 1; i < count; i++) {
+			canvas.drawLine(vertices[2 * i - 2], vertices[2 * i - 1], vertices[2 * i], vertices[2 * i + 1], paint);
+		}
+	}
+
+	/**
+	 * draws the data points start (inclusive) to end (exclusive) of a series.
+	 * read them with {@link GraphViewSeries#getX(int)} and
+	 * {@link GraphViewSeries#getY(int)}. implementations that downsample call
+	 * {@link #reportDrawnPoints(int)}.
+	 */
+	abstract public void drawSeries(Canvas canvas, int color, GraphViewSeries series, int start, int end, float graphwidth, float graphheight, float border, double minX, double minY, double diffX, double diffY,
 			float horstart);
 
 	/**
-	 * formats the label can be overwritten
+	 * tells the render metrics how many points drawSeries actually drew, if
+	 * it drew fewer than it was given. see
+	 * {@link #setRenderMetrics(RenderMetrics)}.
+	 * 
+	 * @param count
+	 */
+	protected void reportDrawnPoints(int count) {
+		mDrawnPoints = count;
+	}
+
+	/**
+	 * formats the label can be overwritten. the labels are cached per value,
+	 * call {@link #resetLabelCache()} if this returns other labels for the
+	 * same values.
 	 * 
 	 * @param value
 	 *            x and y values
@@ -613,43 +1041,82 @@ abstract public class GraphView extends LinearLayout {
 	protected String formatLabel(double value, boolean isValueX) {
 		if (numberformatter == null) {
 			numberformatter = NumberFormat.getNumberInstance();
-			double highestvalue = getMaxY();
-			double lowestvalue = getMinY();
-			if (highestvalue - lowestvalue < 0.1) {
-				numberformatter.setMaximumFractionDigits(6);
-			} else if (highestvalue - lowestvalue < 1) {
-				numberformatter.setMaximumFractionDigits(4);
-			} else if (highestvalue - lowestvalue < 20) {
-				numberformatter.setMaximumFractionDigits(3);
-			} else if (highestvalue - lowestvalue < 100) {
-				numberformatter.setMaximumFractionDigits(1);
-			} else {
-				numberformatter.setMaximumFractionDigits(0);
+			if (mFractionDigits < 0) {
+				mFractionDigits = fractionDigits(getMaxY() - getMinY());
 			}
+			numberformatter.setMaximumFractionDigits(mFractionDigits);
 		}
 		return numberformatter.format(value);
 	}
 
-	private String[] generateHorlabels(float graphwidth) {
-		int numLabels = (int) (graphwidth / GraphViewConfig.VERTICAL_LABEL_WIDTH);
-		String[] labels = new String[numLabels + 1];
-		double min = getMinX(false);
-		double max = getMaxX(false);
-		for (int i = 0; i <= numLabels; i++) {
-			labels[i] = formatLabel(min + ((max - min) * i / numLabels), true);
+	/**
+	 * @return distance of the generated labels of an axis, 0 if the labels
+	 *         are static or not generated yet. can be used by
+	 *         {@link #formatLabel(double, boolean)} to choose the precision.
+	 */
+	protected double getLabelStep(boolean isValueX) {
+		if (isValueX) {
+			return horlabels == null ? mHorAxis.getStep() : 0;
 		}
-		return labels;
+		return verlabels == null ? mVerAxis.getStep() : 0;
 	}
 
-	synchronized private String[] generateVerlabels(float graphheight) {
-		int numLabels = (int) (graphheight / GraphViewConfig.HORIZONTAL_LABEL_HEIGHT);
-		String[] labels = new String[numLabels + 1];
-		double min = getMinY();
-		double max = getMaxY();
-		for (int i = 0; i <= numLabels; i++) {
-			labels[numLabels - i] = formatLabel(min + ((max - min) * i / numLabels), false);
+	/**
+	 * @return the time zone if the x values are timestamps in milliseconds.
+	 *         the generated x labels are then placed at round seconds,
+	 *         minutes, hours or days. null (default) for plain numbers.
+	 */
+	protected TimeZone getTimeZoneX() {
+		return null;
+	}
+
+	private static int fractionDigits(double range) {
+		if (range < 0.1) {
+			return 6;
+		} else if (range < 1) {
+			return 4;
+		} else if (range < 20) {
+			return 3;
+		} else if (range < 100) {
+			return 1;
+		} else {
+			return 0;
 		}
-		return labels;
+	}
+
+	/**
+	 * drops the cached labels, the visible ones are formatted again with the
+	 * next frame. can be called from any thread.
+	 */
+	public void resetLabelCache() {
+		mLabelFormat.incrementAndGet();
+		requestUpdate(UPDATE_CONTENT | UPDATE_VERLABELS);
+	}
+
+	/**
+	 * recreates the number format if the y range needs other fraction digits
+	 */
+	private void updateLabelFormat() {
+		if (mLabelFormatDirty) {
+			mLabelFormatDirty = false;
+			int digits = fractionDigits(getMaxY() - getMinY());
+			if (digits != mFractionDigits) {
+				mFractionDigits = digits;
+				numberformatter = null;
+				mLabelFormat.incrementAndGet();
+			}
+		}
+	}
+
+	private void updateHorAxis(float graphwidth) {
+		int intervals = AxisTicks.intervals(graphwidth, GraphViewConfig.VERTICAL_LABEL_WIDTH);
+		mHorAxis.setTimeZone(getTimeZoneX());
+		mHorAxis.update(getMinX(false), getMaxX(false), intervals, mLabelFormat.get(), mHorFormatter);
+	}
+
+	private void updateVerAxis(float graphheight) {
+		int intervals = AxisTicks.intervals(graphheight, GraphViewConfig.HORIZONTAL_LABEL_HEIGHT);
+		mVerAxis.update(getMinY(), getMaxY(), intervals, mLabelFormat.get(), mVerFormatter);
 	}
 
 	public LegendAlign getLegendAlign() {
@@ -660,78 +1127,50 @@ abstract public class GraphView extends LinearLayout {
 		return legendWidth;
 	}
 
-	private synchronized double getMaxX(boolean ignoreViewport) {
+	private double getMaxX(boolean ignoreViewport) {
 		// if viewport is set, use this
-		if (!ignoreViewport && viewportSize != 0) {
-			return viewportStart + viewportSize;
-		} else {
-			double maxX = Double.MIN_VALUE;
-			for (GraphViewSeries series : graphSeries) {
-				if (series.getMaxX() > maxX) {
-					maxX = series.getMaxX();
-				}
-			}
-			if (graphSeries.size() == 0) {
-				maxX = GraphViewSeries.DEFAULT_MAX_X;
-			}
-
-			return maxX;
+		if (!ignoreViewport && mViewport.isSet()) {
+			return mViewport.getStart() + mViewport.getSize();
 		}
+		mBounds.update(graphSeries);
+		return mBounds.getMaxX();
 	}
 
-	private synchronized double getMaxY() {
-		double largest;
+	private double getMaxY() {
 		if (manualYAxis) {
-			largest = manualMaxYValue;
-		} else {
-			largest = Double.MIN_VALUE;
-			for (GraphViewSeries series : graphSeries) {
-				if (series.getMaxY() > largest) {
-					largest = series.getMaxY();
-				}
-			}
-			if (graphSeries.size() == 0) {
-				largest = GraphViewSeries.DEFAULT_MAX_Y;
-			}
+			return manualMaxYValue;
+		} else if (scaleYAxisToViewport && mViewport.isSet() && mBounds.updateViewport(graphSeries, mViewport.getStart(), mViewport.getSize())) {
+			return mBounds.getViewportMaxY();
 		}
-		return largest;
+		mBounds.update(graphSeries);
+		return mBounds.getMaxY();
 	}
 
-	private synchronized double getMinX(boolean ignoreViewport) {
+	private double getMinX(boolean ignoreViewport) {
 		// if viewport is set, use this
-		if (!ignoreViewport && viewportSize != 0) {
-			return viewportStart;
-		} else {
-			double minX = Double.MAX_VALUE;
-			for (GraphViewSeries series : graphSeries) {
-				if (series.getMinX() < minX) {
-					minX = series.getMinX();
-				}
-			}
-			if (graphSeries.size() == 0) {
-				minX = GraphViewSeries.DEFAULT_MIN_X;
-			}
-
-			return minX;
+		if (!ignoreViewport && mViewport.isSet()) {
+			return mViewport.getStart();
 		}
+		mBounds.update(graphSeries);
+		return mBounds.getMinX();
 	}
 
-	private synchronized double getMinY() {
-		double smallest;
+	private double getMinY() {
 		if (manualYAxis) {
-			smallest = manualMinYValue;
-		} else {
-			smallest = Double.MAX_VALUE;
-			for (GraphViewSeries series : graphSeries) {
-				if (series.getMinY() < smallest) {
-					smallest = series.getMinY();
-				}
-			}
-			if (graphSeries.size() == 0) {
-				smallest = GraphViewSeries.DEFAULT_MIN_Y;
-			}
+			return manualMinYValue;
+		} else if (scaleYAxisToViewport && mViewport.isSet() && mBounds.updateViewport(graphSeries, mViewport.getStart(), mViewport.getSize())) {
+			return mBounds.getViewportMinY();
 		}
-		return smallest;
+		mBounds.update(graphSeries);
+		return mBounds.getMinY();
+	}
+
+	/**
+	 * @return how often the combined bounds of the series were recomputed,
+	 *         they are cached as long as no series changes
+	 */
+	public int getBoundsRecomputeCount() {
+		return mBounds.getRecomputeCount();
 	}
 
 	public boolean isScrollable() {
@@ -783,6 +1222,25 @@ abstract public class GraphView extends LinearLayout {
 		manualYAxis = true;
 	}
 
+	/**
+	 * scales the y axis to the data inside the current viewport instead of
+	 * all data, so zooming into a quiet region shows its details. the bounds
+	 * are found in O(log n) per series, see
+	 * {@link GraphViewSeries#getMinMaxY(int, int, double[])}. manual y axis
+	 * bounds take precedence.
+	 * 
+	 * @param scaleYAxisToViewport
+	 */
+	public void setScaleYAxisToViewport(boolean scaleYAxisToViewport) {
+		this.scaleYAxisToViewport = scaleYAxisToViewport;
+		mLabelFormatDirty = true;
+		requestUpdate(UPDATE_CONTENT | UPDATE_VERLABELS);
+	}
+
+	public boolean isScaleYAxisToViewport() {
+		return scaleYAxisToViewport;
+	}
+
 	public boolean isManualYAxisBounds(){
 		return manualYAxis;
 	}
@@ -805,44 +1263,128 @@ abstract public class GraphView extends LinearLayout {
 			scrollable = true; // automatically forces this
 			scaleDetector = new ScaleGestureDetector(getContext(), new ScaleGestureDetector.SimpleOnScaleGestureListener() {
 				public boolean onScale(ScaleGestureDetector detector) {
-					final double newSize = viewportSize * detector.getScaleFactor();
-					final double diff = newSize - viewportSize;
-					final double minX = getMinX(true);
-					final double maxX = getMaxX(true);
-					viewportStart += diff / 2;
-					viewportSize -= diff;
-					if (diff < 0) {
-						// viewportStart must not be < minX
-						if (viewportStart < minX) {
-							viewportStart = minX;
-						}
-
-						// viewportStart + viewportSize must not be > maxX
-						double overlap = viewportStart + viewportSize - maxX;
-						if (overlap > 0) {
-							// scroll left
-							if (viewportStart - overlap > minX) {
-								viewportStart -= overlap;
-							} else {
-								// maximal scale
-								viewportStart = minX;
-								viewportSize = maxX - viewportStart;
-							}
-						}
-					}
-					verlabels = null;
-					horlabels = null;
-					numberformatter = null;
-					mContentView.onViewportChanged();
-					onViewportChanged();
-					invalidate();
-					viewVerLabels.invalidate();
+					// applied by the next frame, together with the scrolling.
+					// an event changes the size by 2 - factor, these multiply
+					mPendingSizeFactor *= 2 - detector.getScaleFactor();
+					requestUpdate(UPDATE_GESTURES);
 					return true;
 				}
 			});
 		}
 	}
 
+	/**
+	 * slicing, downsampling and transforming the data into screen coordinates
+	 * is done by a worker thread. onDraw only draws the newest prepared frame,
+	 * which can be one frame behind the viewport while scrolling.
+	 * {@link #drawPreparedSeries(Canvas, int, float[], int, float, float, float, float)} is
+	 * used instead of
+	 * {@link #drawSeries(Canvas, int, GraphViewSeries, int, int, float, float, float, double, double, double, double, float)}.
+	 * 
+	 * @param renderInBackground
+	 */
+	public void setRenderInBackground(boolean renderInBackground) {
+		if (renderInBackground && mRenderer == null) {
+			mRenderer = new BackgroundRenderer(new BackgroundRenderer.Listener() {
+				@Override
+				public void onFrameReady() {
+					requestUpdate(UPDATE_CONTENT);
+				}
+			});
+			mRenderer.start();
+		} else if (!renderInBackground && mRenderer != null) {
+			mRenderer.stop();
+			mRenderer = null;
+		}
+		requestUpdate(UPDATE_CONTENT);
+	}
+
+	public boolean isRenderInBackground() {
+		return mRenderer != null;
+	}
+
+	/**
+	 * renders the plot area into bitmap tiles of a fixed x range, scrolling
+	 * through a long history then only draws bitmaps. while a fling is
+	 * running, the tiles ahead are rendered in the background. only used if
+	 * a viewport is set and the y axis does not change while scrolling, see
+	 * {@link #setManualYAxisBounds(double, double)}. not suitable for
+	 * {@link com.jjoe64.graphs.BarGraphView}, whose bar width depends on the
+	 * visible values.
+	 * 
+	 * @param bytes
+	 *            memory budget for the tiles, 0 disables the cache
+	 */
+	public void setTileCacheSize(int bytes) {
+		synchronized (this) {
+			if (bytes > 0 && mTileCache == null) {
+				mTileCache = new TileCache(this, bytes);
+			} else if (bytes > 0) {
+				mTileCache.setBudget(bytes);
+			} else if (mTileCache != null) {
+				mTileCache.stop();
+				mTileCache.clear();
+				mTileCache = null;
+			}
+		}
+		requestUpdate(UPDATE_CONTENT);
+	}
+
+	/**
+	 * @return memory budget of the tile cache in bytes, 0 if disabled
+	 */
+	public int getTileCacheSize() {
+		synchronized (this) {
+			return mTileCache != null ? mTileCache.getBudget() : 0;
+		}
+	}
+
+	/**
+	 * measures the time every frame spends generating labels, slicing the
+	 * data, drawing each series and the legend, and how many points were
+	 * drawn. the measuring itself costs a few System.nanoTime() calls per
+	 * series and frame.
+	 * 
+	 * @param metrics
+	 *            receives the measurements, null disables them
+	 */
+	public void setRenderMetrics(RenderMetrics metrics) {
+		synchronized (this) {
+			mMetrics = metrics;
+		}
+	}
+
+	public RenderMetrics getRenderMetrics() {
+		synchronized (this) {
+			return mMetrics;
+		}
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (mRenderer != null) {
+			mRenderer.start();
+		}
+		if (mPendingUpdates.get() != 0) {
+			mFrameScheduler.schedule();
+		}
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		if (mRenderer != null) {
+			mRenderer.stop();
+		}
+		mFrameScheduler.cancel();
+		synchronized (this) {
+			if (mTileCache != null) {
+				mTileCache.stop();
+			}
+		}
+		super.onDetachedFromWindow();
+	}
+
 	/**
 	 * the user can scroll (horizontal) the graph. This is only useful if you
 	 * use a viewport {@link #setViewPort(double, double)} which doesn't
@@ -877,7 +1419,7 @@ abstract public class GraphView extends LinearLayout {
 			mContentView.onViewportChanged();
 		}
 		if (mViewPortListener!=null){
-			mViewPortListener.onViewportChanged(viewportStart, viewportSize);
+			mViewPortListener.onViewportChanged(mViewport.getStart(), mViewport.getSize());
 		}
 	}
 
@@ -889,26 +1431,23 @@ abstract public class GraphView extends LinearLayout {
 	 * @param size
 	 */
 	public void setViewPort(double start, double size) {
-		viewportStart = start;
-		viewportSize = size;
+		mViewport.set(start, size);
 		onViewportChanged();
 	}
 	public void setViewPortSize(double size){
-		if (viewportSize==0){
+		if (!mViewport.isSet()){
 			moveViewPortStartToBeginning();
 		}
-		viewportSize = size;
+		mViewport.setSize(size);
 		onViewportChanged();
 	}
 	public void moveViewPortStartToTheEnd(){
-		double newViewPortStart = getMaxX(true) - viewportSize;
-		double min =  getMinX(true);
-		viewportStart = Math.max(newViewPortStart, min);
+		mViewport.moveToEnd(getMinX(true), getMaxX(true));
 		onViewportChanged();
 	}
 	
 	public void moveViewPortStartToBeginning(){
-		viewportStart = getMinX(true);
+		mViewport.moveToBeginning(getMinX(true));
 		onViewportChanged();
 	}
 }
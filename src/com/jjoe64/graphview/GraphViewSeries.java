@@ -1,14 +1,25 @@
 package com.jjoe64.graphview;
 
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.UUID;
 
 /**
- * a graph series
+ * a graph series. the data points are stored column by column in primitive
+ * arrays (x values sorted ascending), use {@link #size()}, {@link #getX(int)}
+ * and {@link #getY(int)} to read them without allocations.
+ *
+ * writers are serialized by the series lock, readers never take it. every
+ * modification publishes an immutable snapshot of the data: appends only
+ * write behind the last published data point, removals copy the data into
+ * new arrays. a thread that has to see consistent data over several calls,
+ * like onDraw, pins the current snapshot with {@link #pin()}.
  */
 public class GraphViewSeries {
 	static final int DEFAULT_MIN_X = 0;
@@ -33,15 +44,129 @@ public class GraphViewSeries {
 			return Double.compare(this.valueX, another.valueX);
 		}
 	}
+
+
+	/**
+	 * how a line graph reduces the visible data before drawing it
+	 */
+	public enum Downsampling {
+		/** draw every data point */
+		NONE,
+		/**
+		 * Largest-Triangle-Three-Buckets, keeps the visual shape of the line
+		 * with a few points per pixel
+		 */
+		LTTB,
+		/**
+		 * keeps the first, last, minimum and maximum point of every pixel
+		 * column. the line looks exactly like the line through all points.
+		 */
+		M4
+	}
 		
+	/**
+	 * immutable state of the data as seen by readers. the arrays are shared
+	 * with the writer, but it never changes the entries offset to
+	 * offset + size - 1 of a published snapshot.
+	 */
+	static final class Data {
+		final double[] x;
+		final double[] y;
+		final int offset;
+		final int size;
+		final double minX, maxX, minY, maxY;
+		final int version;
+		final int rewriteCount;
+		/** changes when the data moves to other array positions */
+		final int generation;
+
+		Data(double[] x, double[] y, int offset, int size, double minX, double maxX, double minY, double maxY, int version, int rewriteCount, int generation) {
+			this.x = x;
+			this.y = y;
+			this.offset = offset;
+			this.size = size;
+			this.minX = minX;
+			this.maxX = maxX;
+			this.minY = minY;
+			this.maxY = maxY;
+			this.version = version;
+			this.rewriteCount = rewriteCount;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * the snapshot a thread reads while it has pinned the series
+	 */
+	private static final class Pin {
+		final Thread thread;
+		final Data data;
+		int count;
+
+		Pin(Thread thread, Data data) {
+			this.thread = thread;
+			this.data = data;
+		}
+	}
+
+	private static final Pin[] NO_PINS = new Pin[0];
+
+	/**
+	 * read only list view on the primitive storage. the GraphViewData objects
+	 * are created on access.
+	 */
+	private class ValuesView extends AbstractList<GraphViewData> implements RandomAccess {
+		@Override
+		public GraphViewData get(int location) {
+			Data data = data();
+			if (location < 0 || location >= data.size) {
+				throw new IndexOutOfBoundsException("index " + location + ", size " + data.size);
+			}
+			return new GraphViewData(xAt(data, location), yAt(data, location));
+		}
+
+		@Override
+		public int size() {
+			return GraphViewSeries.this.size();
+		}
+	}
+
+	private static final int MIN_CAPACITY = 16;
+
 	final int hashCode;
 	final String description;
 	final int color;
+	/** state of the writer, guarded by the series lock */
 	private double minX, maxX, minY, maxY;
 	private boolean mIsVisible = true;
-	final ArrayList<GraphViewData> values = new ArrayList<GraphViewData>();
-	private final Comparator<GraphViewData> mYDataComparator = new YDataComparator();
-	
+	private Downsampling mDownsampling = Downsampling.NONE;
+	private float mDownsamplingDensity = 2;
+	/** incremented on every modification of the data */
+	private int mVersion;
+	/** incremented when data points are removed from the middle */
+	private int mRewriteCount;
+	/** incremented when the data is copied to new array positions */
+	private int mGeneration;
+	/** columnar storage, only the first mSize entries are valid */
+	private double[] mValuesX;
+	private double[] mValuesY;
+	private int mSize;
+	/** y range index, created on the first range query */
+	private RangeMinMaxIndex mRangeIndex;
+	/** level of detail pyramid, created on first use */
+	private LodPyramid mPyramid;
+	/** the latest published snapshot */
+	private volatile Data mData;
+	/** copy on write, usually empty */
+	private volatile Pin[] mPins = NO_PINS;
+	private final Object mPinLock = new Object();
+	final List<GraphViewData> values = new ValuesView();
+
+	/**
+	 * @return a read only list view of the data. every access creates a new
+	 *         GraphViewData object, prefer {@link #getX(int)} and
+	 *         {@link #getY(int)} in loops
+	 */
 	public List<GraphViewData> getValues(){
 		return values;
 	}
@@ -59,15 +184,6 @@ public class GraphViewSeries {
 		return hashCode;
 	}
 	
-	private static class YDataComparator implements Comparator<GraphViewData> {
-
-		@Override
-		public int compare(GraphViewData object1, GraphViewData object2) {
-			return Double.compare(object1.valueY, object2.valueY);
-		}
-		
-	}
-
 	public GraphViewSeries(List<GraphViewData> values) {
 		this(null, 0xff0077cc, values);
 	}
@@ -98,9 +214,18 @@ public class GraphViewSeries {
 			color = 0xff0077cc; // blue version
 		}
 		this.color = color;
-		this.values.addAll(values);
-		Collections.sort(this.values);
+		List<GraphViewData> sorted = new ArrayList<GraphViewData>(values);
+		Collections.sort(sorted);
+		mValuesX = new double[Math.max(sorted.size(), MIN_CAPACITY)];
+		mValuesY = new double[mValuesX.length];
+		for (int i = 0; i < sorted.size(); i++) {
+			GraphViewData data = sorted.get(i);
+			mValuesX[i] = data.valueX;
+			mValuesY[i] = data.valueY;
+		}
+		mSize = sorted.size();
 		updateAllMinMaxValues();
+		mData = new Data(mValuesX, mValuesY, 0, mSize, minX, maxX, minY, maxY, mVersion, mRewriteCount, mGeneration);
 		hashCode = UUID.randomUUID().toString().hashCode();
 	}
 
@@ -110,7 +235,164 @@ public class GraphViewSeries {
 	public void setVisible(boolean value){
 		mIsVisible = value;
 	}
+
+	public Downsampling getDownsampling(){
+		return mDownsampling;
+	}
+
+	/**
+	 * @return number of data points per horizontal pixel that are kept when
+	 *         downsampling
+	 */
+	public float getDownsamplingDensity(){
+		return mDownsamplingDensity;
+	}
+
+	/**
+	 * reduces the visible data before it is drawn. only used by LineGraphView.
+	 * 
+	 * @param downsampling
+	 */
+	public void setDownsampling(Downsampling downsampling){
+		setDownsampling(downsampling, mDownsamplingDensity);
+	}
+
+	/**
+	 * @param downsampling
+	 * @param pointsPerPixel
+	 *            number of data points per horizontal pixel that are kept,
+	 *            2 - 4 is a good value
+	 */
+	public void setDownsampling(Downsampling downsampling, float pointsPerPixel){
+		if (pointsPerPixel <= 0) {
+			throw new IllegalArgumentException("pointsPerPixel must be > 0, was " + pointsPerPixel);
+		}
+		mDownsampling = downsampling == null ? Downsampling.NONE : downsampling;
+		mDownsamplingDensity = pointsPerPixel;
+	}
+
+	/**
+	 * @return a counter that changes whenever data is added or removed. can be
+	 *         used to invalidate caches.
+	 */
+	public int getVersion(){
+		return data().version;
+	}
+
+	/**
+	 * @return a counter that changes when data points are removed from the
+	 *         middle of the series. as long as it stays the same, data was
+	 *         only added or removed at the ends, and a cache of screen
+	 *         geometry only has to update the x range between the old and the
+	 *         new first and last point.
+	 */
+	public int getRewriteCount(){
+		return data().rewriteCount;
+	}
+
+	/**
+	 * has to be called by subclasses after they modified the data, publishes
+	 * a new snapshot
+	 */
+	protected final void notifyDataChanged(){
+		mVersion++;
+		publish();
+	}
+
+	/**
+	 * makes the current state of the writer visible to readers
+	 */
+	final void publish(){
+		mData = snapshot();
+	}
+
+	/**
+	 * @return the current state of the writer. subclasses with their own
+	 *         storage create it with
+	 *         {@link #newData(double[], double[], int, int, double, double, double, double, int)}.
+	 */
+	Data snapshot(){
+		return newData(mValuesX, mValuesY, 0, mSize, minX, maxX, minY, maxY, mGeneration);
+	}
+
+	final Data newData(double[] x, double[] y, int offset, int size, double minX, double maxX, double minY, double maxY, int generation){
+		return new Data(x, y, offset, size, minX, maxX, minY, maxY, mVersion, mRewriteCount, generation);
+	}
+
+	/**
+	 * @return the snapshot the current thread has pinned, otherwise the latest
+	 */
+	final Data data(){
+		Pin[] pins = mPins;
+		if (pins.length > 0) {
+			Thread thread = Thread.currentThread();
+			for (int i = 0; i < pins.length; i++) {
+				if (pins[i].thread == thread) {
+					return pins[i].data;
+				}
+			}
+		}
+		return mData;
+	}
+
+	/**
+	 * until {@link #unpin()} is called, the current thread reads the data as
+	 * it is now, while other threads keep appending. calls can be nested.
+	 */
+	void pin(){
+		synchronized (mPinLock) {
+			Thread thread = Thread.currentThread();
+			Pin[] pins = mPins;
+			for (int i = 0; i < pins.length; i++) {
+				if (pins[i].thread == thread) {
+					pins[i].count++;
+					return;
+				}
+			}
+			Pin pin = new Pin(thread, mData);
+			pin.count = 1;
+			Pin[] grown = new Pin[pins.length + 1];
+			System.arraycopy(pins, 0, grown, 0, pins.length);
+			grown[pins.length] = pin;
+			mPins = grown;
+		}
+	}
+
+	void unpin(){
+		synchronized (mPinLock) {
+			Thread thread = Thread.currentThread();
+			Pin[] pins = mPins;
+			for (int i = 0; i < pins.length; i++) {
+				if (pins[i].thread == thread) {
+					if (--pins[i].count == 0) {
+						Pin[] shrunk = pins.length == 1 ? NO_PINS : new Pin[pins.length - 1];
+						System.arraycopy(pins, 0, shrunk, 0, i);
+						System.arraycopy(pins, i + 1, shrunk, i, pins.length - i - 1);
+						mPins = shrunk;
+					}
+					return;
+				}
+			}
+			throw new IllegalStateException("series is not pinned by " + thread);
+		}
+	}
 	
+	/**
+	 * @return true if a thread has pinned a snapshot that reads x
+	 */
+	final boolean isPinned(double[] x){
+		// waits for a pin that is being taken
+		synchronized (mPinLock) {
+			Pin[] pins = mPins;
+			for (int i = 0; i < pins.length; i++) {
+				if (pins[i].data.x == x) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
 	private void updateAllMinMaxValues(){
 		updateMaxX();
 		updateMaxY();
@@ -119,46 +401,529 @@ public class GraphViewSeries {
 	}
 	
 	private void updateMinY(){
-		if (values.size()>0){
-			minY = Collections.min(values,mYDataComparator).valueY;
+		if (mSize>0){
+			double smallest = mValuesY[0];
+			for (int i = 1; i < mSize; i++) {
+				if (mValuesY[i] < smallest) {
+					smallest = mValuesY[i];
+				}
+			}
+			minY = smallest;
 		} else {
 			minY = DEFAULT_MIN_Y;
 		}			
 	}
 	
 	private void updateMaxY(){
-		if (values.size()>0){
-			maxY = Collections.max(values,mYDataComparator).valueY;
+		if (mSize>0){
+			double largest = mValuesY[0];
+			for (int i = 1; i < mSize; i++) {
+				if (mValuesY[i] > largest) {
+					largest = mValuesY[i];
+				}
+			}
+			maxY = largest;
 		} else {
 			maxY = DEFAULT_MAX_Y;
 		}			
 	}
 	
 	private void updateMinX(){
-		if (values.size()>0){
-			minX = values.get(0).valueX;
+		if (mSize>0){
+			minX = mValuesX[0];
 		} else {
 			minX = DEFAULT_MIN_X;
 		}
 	}
 	private void updateMaxX(){
-		if (values.size()>0){
-			maxX = values.get(values.size()-1).valueX;
+		if (mSize>0){
+			maxX = mValuesX[mSize-1];
 		} else {
 			maxX = DEFAULT_MAX_X;
 		}
 	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity > mValuesX.length) {
+			int capacity = Math.max(mValuesX.length + (mValuesX.length >> 1), minCapacity);
+			double[] valuesX = new double[capacity];
+			double[] valuesY = new double[capacity];
+			System.arraycopy(mValuesX, 0, valuesX, 0, mSize);
+			System.arraycopy(mValuesY, 0, valuesY, 0, mSize);
+			mValuesX = valuesX;
+			mValuesY = valuesY;
+		}
+	}
 	
-	public synchronized void add(GraphViewData data){
-		final int lastIndex = values.size()-1;
-		if (lastIndex>0) {
-			GraphViewData last = this.values.get(lastIndex);
-			if (data.valueX < last.valueX){
-				throw new IllegalArgumentException(data.valueX + "<" + last.valueX +"! x value must be larger than the last x values in the series");
+	/**
+	 * makes room for count more data points, so a bulk load does not grow the
+	 * arrays several times
+	 */
+	synchronized void reserve(int count) {
+		ensureCapacity(mSize + count);
+	}
+
+	public void add(GraphViewData data){
+		add(data.valueX, data.valueY);
+	}
+
+	/**
+	 * appends a data point to the end of the series
+	 * @param x must not be smaller than the last x value of the series
+	 * @param y
+	 */
+	public synchronized void add(double x, double y){
+		if (mSize>0) {
+			double lastX = mValuesX[mSize-1];
+			if (x < lastX){
+				throw new IllegalArgumentException(x + "<" + lastX +"! x value must be larger than the last x values in the series");
 			}
 		}
-		this.values.add(data);
+		ensureCapacity(mSize+1);
+		mValuesX[mSize] = x;
+		mValuesY[mSize] = y;
+		if (mRangeIndex != null) {
+			mRangeIndex.ensureCapacity(mValuesY.length);
+			mRangeIndex.include(mSize, y);
+		}
+		if (mPyramid != null) {
+			mPyramid.append(mValuesY, mSize);
+		}
+		mSize++;
+		updateMinMaxValues(x, y);
+		notifyDataChanged();
+	}
+
+	/**
+	 * appends several data points at once. the whole batch is validated
+	 * before anything is added and the bounds are updated only once.
+	 * @param xs x values, sorted and not smaller than the last x value of the series
+	 * @param ys y values
+	 * @param off index of the first data point in xs and ys
+	 * @param len number of data points
+	 */
+	public synchronized void addAll(double[] xs, double[] ys, int off, int len){
+		checkBatch(xs, ys, off, len, mSize > 0 ? mValuesX[mSize-1] : Double.NEGATIVE_INFINITY);
+		ensureCapacity(mSize+len);
+		System.arraycopy(xs, off, mValuesX, mSize, len);
+		System.arraycopy(ys, off, mValuesY, mSize, len);
+		commitAppended(len);
+	}
+
+	/**
+	 * appends the remaining data points of two buffers, one with the x values
+	 * and one with the y values. the values are copied in bulk into the
+	 * series, no objects are created per data point. on success the position
+	 * of both buffers is at their limit.
+	 * @param xs x values, sorted and not smaller than the last x value of the series
+	 * @param ys y values, same number as xs
+	 */
+	public synchronized void addAll(DoubleBuffer xs, DoubleBuffer ys){
+		int len = checkBuffers(xs, ys);
+		ensureCapacity(mSize+len);
+		int xsPosition = xs.position();
+		int ysPosition = ys.position();
+		xs.get(mValuesX, mSize, len);
+		ys.get(mValuesY, mSize, len);
+		try {
+			commitAppended(len);
+		} catch (IllegalArgumentException e) {
+			xs.position(xsPosition);
+			ys.position(ysPosition);
+			throw e;
+		}
+	}
+
+	/**
+	 * appends the remaining data points of a buffer with interleaved (x, y)
+	 * values. no objects are created per data point. on success the position
+	 * of the buffer is at its limit.
+	 * @param xy x0, y0, x1, y1, ... the x values must be sorted and not smaller
+	 *        than the last x value of the series
+	 */
+	public synchronized void addAll(DoubleBuffer xy){
+		int len = checkInterleaved(xy);
+		ensureCapacity(mSize+len);
+		int position = xy.position();
+		for (int i = 0; i < len; i++) {
+			mValuesX[mSize+i] = xy.get(position + 2*i);
+			mValuesY[mSize+i] = xy.get(position + 2*i + 1);
+		}
+		commitAppended(len);
+		xy.position(position + 2*len);
+	}
+
+	/**
+	 * like {@link #addAll(DoubleBuffer, DoubleBuffer)} for raw bytes, e.g. a
+	 * direct buffer filled by native code. the byte order of the buffers is
+	 * used, set it with {@link ByteBuffer#order(java.nio.ByteOrder)}.
+	 */
+	public void addAll(ByteBuffer xs, ByteBuffer ys){
+		DoubleBuffer xsView = xs.asDoubleBuffer();
+		DoubleBuffer ysView = ys.asDoubleBuffer();
+		addAll(xsView, ysView);
+		xs.position(xs.position() + 8*xsView.position());
+		ys.position(ys.position() + 8*ysView.position());
+	}
+
+	/**
+	 * like {@link #addAll(DoubleBuffer)} for raw bytes, e.g. a direct buffer
+	 * filled by native code. the byte order of the buffer is used, set it with
+	 * {@link ByteBuffer#order(java.nio.ByteOrder)}.
+	 */
+	public void addAll(ByteBuffer xy){
+		DoubleBuffer view = xy.asDoubleBuffer();
+		addAll(view);
+		xy.position(xy.position() + 8*view.position());
+	}
+
+	/**
+	 * makes the len values that were written behind the last data point part
+	 * of the series. validates the order of the x values first.
+	 */
+	private void commitAppended(int len){
+		double lastX = mSize > 0 ? mValuesX[mSize-1] : Double.NEGATIVE_INFINITY;
+		for (int i = mSize; i < mSize + len; i++) {
+			if (mValuesX[i] < lastX){
+				throw new IllegalArgumentException(mValuesX[i] + "<" + lastX +"! x value must be larger than the last x values in the series");
+			}
+			lastX = mValuesX[i];
+		}
+		if (len == 0) {
+			return;
+		}
+		double smallest = mSize > 0 ? minY : Double.POSITIVE_INFINITY;
+		double largest = mSize > 0 ? maxY : Double.NEGATIVE_INFINITY;
+		for (int i = mSize; i < mSize + len; i++) {
+			if (mValuesY[i] < smallest) {
+				smallest = mValuesY[i];
+			}
+			if (mValuesY[i] > largest) {
+				largest = mValuesY[i];
+			}
+		}
+		if (mRangeIndex != null) {
+			mRangeIndex.ensureCapacity(mValuesY.length);
+			for (int i = mSize; i < mSize + len; i++) {
+				mRangeIndex.include(i, mValuesY[i]);
+			}
+		}
+		if (mPyramid != null) {
+			for (int i = mSize; i < mSize + len; i++) {
+				mPyramid.append(mValuesY, i);
+			}
+		}
+		if (mSize == 0) {
+			minX = mValuesX[0];
+		}
+		mSize += len;
+		maxX = mValuesX[mSize-1];
+		minY = smallest;
+		maxY = largest;
+		notifyDataChanged();
+	}
+
+	/**
+	 * @return number of data points in the buffers
+	 */
+	static int checkBuffers(DoubleBuffer xs, DoubleBuffer ys){
+		if (xs.remaining() != ys.remaining()) {
+			throw new IllegalArgumentException("xs has " + xs.remaining() + " values, ys has " + ys.remaining());
+		}
+		return xs.remaining();
+	}
+
+	/**
+	 * @return number of data points in the interleaved buffer
+	 */
+	static int checkInterleaved(DoubleBuffer xy){
+		if ((xy.remaining() & 1) != 0) {
+			throw new IllegalArgumentException("interleaved buffer has an odd number of values: " + xy.remaining());
+		}
+		return xy.remaining() / 2;
+	}
+
+	/**
+	 * validates the arguments of {@link #addAll(double[], double[], int, int)}
+	 * @param lastX last x value of the series
+	 */
+	static void checkBatch(double[] xs, double[] ys, int off, int len, double lastX){
+		if (off < 0 || len < 0 || off + len > xs.length || off + len > ys.length) {
+			throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", xs " + xs.length + ", ys " + ys.length);
+		}
+		for (int i = off; i < off + len; i++) {
+			if (xs[i] < lastX){
+				throw new IllegalArgumentException(xs[i] + "<" + lastX +"! x value must be larger than the last x values in the series");
+			}
+			lastX = xs[i];
+		}
+	}
+
+	/**
+	 * includes a new data point into the bounds in constant time
+	 */
+	private void updateMinMaxValues(double x, double y){
+		if (mSize == 1) {
+			minX = maxX = x;
+			minY = maxY = y;
+		} else {
+			// x values are sorted
+			maxX = x;
+			if (y < minY) {
+				minY = y;
+			}
+			if (y > maxY) {
+				maxY = y;
+			}
+		}
+	}
+
+	/**
+	 * removes the data points start (inclusive) to end (exclusive). the y
+	 * bounds are only recomputed if a removed point was a bound.
+	 * @param start
+	 * @param end
+	 */
+	public synchronized void removeRange(int start, int end){
+		if (start < 0 || end > mSize || start > end) {
+			throw new IndexOutOfBoundsException("range " + start + ".." + end + ", size " + mSize);
+		}
+		if (start == end) {
+			return;
+		}
+		if (start > 0 && end < mSize) {
+			mRewriteCount++;
+		}
+		boolean boundRemoved = false;
+		for (int i = start; i < end; i++) {
+			if (mValuesY[i] <= minY || mValuesY[i] >= maxY) {
+				boundRemoved = true;
+				break;
+			}
+		}
+		// readers may still use the old arrays
+		int size = mSize - (end - start);
+		double[] valuesX = new double[Math.max(size, MIN_CAPACITY)];
+		double[] valuesY = new double[valuesX.length];
+		System.arraycopy(mValuesX, 0, valuesX, 0, start);
+		System.arraycopy(mValuesY, 0, valuesY, 0, start);
+		System.arraycopy(mValuesX, end, valuesX, start, mSize - end);
+		System.arraycopy(mValuesY, end, valuesY, start, mSize - end);
+		mValuesX = valuesX;
+		mValuesY = valuesY;
+		mSize = size;
+		mGeneration++;
+		mRangeIndex = null;
+		mPyramid = null;
+		updateMinX();
+		updateMaxX();
+		if (boundRemoved) {
+			updateMinY();
+			updateMaxY();
+		}
+		notifyDataChanged();
+	}
+
+	/**
+	 * removes the oldest data points
+	 * @param count number of data points to remove from the start of the series
+	 */
+	public void removeFirst(int count){
+		removeRange(0, count);
+	}
+
+	/**
+	 * removes all data points
+	 */
+	public synchronized void clear(){
+		mValuesX = new double[MIN_CAPACITY];
+		mValuesY = new double[MIN_CAPACITY];
+		mSize = 0;
+		mGeneration++;
+		mRangeIndex = null;
+		mPyramid = null;
 		updateAllMinMaxValues();
+		notifyDataChanged();
+	}
+
+	/**
+	 * replaces all data points at once, readers see either the old or the
+	 * new data, never an empty series in between
+	 * @param xs x values, sorted ascending. the arrays are taken over, not
+	 * copied
+	 * @param ys
+	 * @param len number of data points
+	 */
+	synchronized void replaceAll(double[] xs, double[] ys, int len){
+		checkBatch(xs, ys, 0, len, Double.NEGATIVE_INFINITY);
+		replaceData(xs, ys, len);
+		mRewriteCount++;
+		notifyDataChanged();
+	}
+
+	/**
+	 * stores the data of {@link #replaceAll(double[], double[], int)}
+	 * without publishing it
+	 */
+	void replaceData(double[] xs, double[] ys, int len){
+		mValuesX = xs;
+		mValuesY = ys;
+		mSize = len;
+		mGeneration++;
+		mRangeIndex = null;
+		mPyramid = null;
+		updateAllMinMaxValues();
+	}
+
+	/**
+	 * @return number of data points
+	 */
+	public int size(){
+		return data().size;
+	}
+
+	/**
+	 * @param index 0 &lt;= index &lt; {@link #size()}
+	 * @return x value of the data point at index
+	 */
+	public double getX(int index){
+		return xAt(data(), index);
+	}
+
+	/**
+	 * @param index 0 &lt;= index &lt; {@link #size()}
+	 * @return y value of the data point at index
+	 */
+	public double getY(int index){
+		return yAt(data(), index);
+	}
+
+	/**
+	 * reads the x value of a data point of a snapshot. subclasses that keep
+	 * the data outside of the snapshot arrays override this and
+	 * {@link #yAt(Data, int)}.
+	 */
+	double xAt(Data data, int index){
+		return data.x[data.offset + index];
+	}
+
+	double yAt(Data data, int index){
+		return data.y[data.offset + index];
+	}
+
+	/**
+	 * finds the smallest and the largest y value of the data points start
+	 * (inclusive) to end (exclusive) in O(log n). the first call builds an
+	 * index that is maintained while data is appended.
+	 * @param start
+	 * @param end
+	 * @param result receives min at 0 and max at 1. if the range is empty,
+	 *        +infinity and -infinity.
+	 */
+	public synchronized void getMinMaxY(int start, int end, double[] result){
+		Data data = data();
+		result[0] = Double.POSITIVE_INFINITY;
+		result[1] = Double.NEGATIVE_INFINITY;
+		if (data.generation != mGeneration) {
+			// pinned before the data moved, the index does not fit
+			scanMinMaxY(data, start, end, result);
+			return;
+		}
+		if (mRangeIndex == null) {
+			mRangeIndex = new RangeMinMaxIndex(mValuesY, mSize);
+		}
+		mRangeIndex.query(data.y, start, end, result);
+	}
+
+	static void scanMinMaxY(Data data, int start, int end, double[] result){
+		for (int i = data.offset + start; i < data.offset + end; i++) {
+			if (data.y[i] < result[0]) {
+				result[0] = data.y[i];
+			}
+			if (data.y[i] > result[1]) {
+				result[1] = data.y[i];
+			}
+		}
+	}
+
+	/**
+	 * the first call builds the pyramid, afterwards it is extended while data
+	 * is appended. it is extended by the writer, so it must only be read with
+	 * the series lock held, and only the buckets below the size of the
+	 * snapshot of the reader are valid for it.
+	 * @return level of detail pyramid of the data, null if the series does not
+	 *         support it
+	 */
+	synchronized LodPyramid getLodPyramid(){
+		if (data().generation != mGeneration) {
+			return null;
+		}
+		if (mPyramid == null) {
+			mPyramid = new LodPyramid(mValuesY, mSize);
+		}
+		return mPyramid;
+	}
+
+	/**
+	 * searches the x values for the given value. same contract as
+	 * {@link Collections#binarySearch(List, Object)}.
+	 * @param x position on x axis
+	 * @return index of x, if found. otherwise (-(insertion point) - 1)
+	 */
+	public int binarySearch(double x){
+		return binarySearch(data(), x);
+	}
+
+	private int binarySearch(Data data, double x){
+		int low = 0;
+		int high = data.size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = Double.compare(xAt(data, mid), x);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * finds the data points that have to be drawn for a viewport, including
+	 * the neighbours outside of the viewport so the line reaches the edges.
+	 * @param viewportStart
+	 * @param viewportSize 0 together with viewportStart 0 means all data
+	 * @param range receives the index range [start, end)
+	 * @return false if the series has no values inside the viewport
+	 */
+	public boolean findRange(double viewportStart, double viewportSize, int[] range) {
+		Data data = data();
+		int size = data.size;
+		if (viewportStart == 0 && viewportSize == 0) {
+			// all data
+			range[0] = 0;
+			range[1] = size;
+			return true;
+		} else {
+			int start = Math.abs(binarySearch(data, viewportStart));
+			// series has no values inside current viewport
+			if (start > size) {
+				return false;
+			}
+
+			start = Math.max(start-2, 0);
+
+			int end = Math.abs(binarySearch(data, viewportStart + viewportSize));
+
+			end = Math.min(end+1, size);
+
+			range[0] = start;
+			range[1] = end;
+			return true;
+		}
 	}
 
 	/**
@@ -167,25 +932,24 @@ public class GraphViewSeries {
 	 * @return
 	 */
 	public GraphViewData getNearestValue(double x){
-
-		GraphViewData dummyData = new GraphViewData(x, 0);
-		int start = Collections.binarySearch(values, dummyData);
+		Data data = data();
+		int start = binarySearch(data, x);
 		if (start<0){
-			start = Math.abs(start)-1;
+			start = Math.min(Math.abs(start)-1, data.size-1);
 		}
-		return values.get(start);
+		return new GraphViewData(xAt(data, start), yAt(data, start));
 	}
 	
-	public synchronized double getMinX(){
-		return minX;
+	public double getMinX(){
+		return data().minX;
 	}
-	public synchronized double getMinY(){
-		return minY;
+	public double getMinY(){
+		return data().minY;
 	}
-	public synchronized double getMaxX(){
-		return maxX;
+	public double getMaxX(){
+		return data().maxX;
 	}		
-	public synchronized double getMaxY(){
-		return maxY;
+	public double getMaxY(){
+		return data().maxY;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.jjoe64.graphview;
+
+/**
+ * reused buffers to draw a polyline with Canvas.drawLines and
+ * Canvas.drawPoints. the points are written as x, y pairs into
+ * {@link #ensurePoints(int)} and can be transformed in place with one bulk
+ * Matrix.mapPoints call. {@link #buildSegments(int)} expands them into the
+ * x0, y0, x1, y1 quadruples drawLines expects.
+ *
+ * both arrays only grow, a frame that does not show more points than the
+ * previous ones allocates nothing.
+ */
+public final class LineSegmentBuffer {
+	private float[] mPoints = new float[0];
+	private float[] mSegments = new float[0];
+
+	/**
+	 * @param count
+	 *            number of points
+	 * @return array with room for at least count x, y pairs. the content is
+	 *         kept when the array grows.
+	 */
+	public float[] ensurePoints(int count) {
+		if (mPoints.length < 2 * count) {
+			float[] grown = new float[2 * count + (count >> 1)];
+			System.arraycopy(mPoints, 0, grown, 0, mPoints.length);
+			mPoints = grown;
+		}
+		return mPoints;
+	}
+
+	public float[] getPoints() {
+		return mPoints;
+	}
+
+	/**
+	 * connects the first count points to line segments
+	 * @return number of floats in {@link #getSegments()}, 4 per segment
+	 */
+	public int buildSegments(int count) {
+		if (count < 2) {
+			return 0;
+		}
+		int length = 4 * (count - 1);
+		if (mSegments.length < length) {
+			mSegments = new float[length + (length >> 2)];
+		}
+		float[] points = mPoints;
+		float[] segments = mSegments;
+		// every inner point ends one segment and starts the next
+		float x = points[0];
+		float y = points[1];
+		for (int j = 1, s = 0; j < count; j++, s += 4) {
+			segments[s] = x;
+			segments[s + 1] = y;
+			x = points[2 * j];
+			y = points[2 * j + 1];
+			segments[s + 2] = x;
+			segments[s + 3] = y;
+		}
+		return length;
+	}
+
+	public float[] getSegments() {
+		return mSegments;
+	}
+}
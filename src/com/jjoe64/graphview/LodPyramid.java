@@ -0,0 +1,151 @@
+package com.jjoe64.graphview;
+
+/**
+ * level of detail pyramid of a series. level k splits the data points into
+ * buckets of 2^k points and stores the index of the minimum and the maximum
+ * y value of every bucket. the first and the last point of a bucket follow
+ * from its position. drawing the buckets of a level instead of the data
+ * points keeps every spike, while the work only depends on the number of
+ * buckets.
+ *
+ * the pyramid is extended in O(log n) per appended data point.
+ */
+final class LodPyramid {
+	/** smallest level that is stored, below drawing the points is cheaper */
+	static final int MIN_LEVEL = 2;
+
+	/** per level, index of the minimum / maximum of every bucket */
+	private int[][] mMinIndex = new int[0][];
+	private int[][] mMaxIndex = new int[0][];
+	/** number of indexed data points */
+	private int mSize;
+
+	/**
+	 * builds the pyramid for the first size values
+	 */
+	LodPyramid(double[] values, int size) {
+		for (int i = 0; i < size; i++) {
+			append(values, i);
+		}
+	}
+
+	/**
+	 * includes the data point at index, which must be the next one
+	 * @param values y values of the series
+	 * @param index == number of data points that were appended before
+	 */
+	void append(double[] values, int index) {
+		mSize = index + 1;
+		// a new level is started once it has two buckets of the level below
+		int levels = MIN_LEVEL;
+		while (mSize > 1 << (levels + 1)) {
+			levels++;
+		}
+		int stored = levels - MIN_LEVEL + 1;
+		if (stored > mMinIndex.length) {
+			addLevel(values, index);
+		}
+		double y = values[index];
+		for (int l = 0; l < mMinIndex.length; l++) {
+			int bucket = index >> (l + MIN_LEVEL);
+			int[] min = ensureBucket(mMinIndex, l, bucket);
+			int[] max = ensureBucket(mMaxIndex, l, bucket);
+			if ((index & ((1 << (l + MIN_LEVEL)) - 1)) == 0) {
+				// first point of the bucket
+				min[bucket] = index;
+				max[bucket] = index;
+			} else {
+				if (y < values[min[bucket]]) {
+					min[bucket] = index;
+				}
+				if (y > values[max[bucket]]) {
+					max[bucket] = index;
+				}
+			}
+		}
+	}
+
+	private void addLevel(double[] values, int index) {
+		int level = mMinIndex.length;
+		int[][] minIndex = new int[level + 1][];
+		int[][] maxIndex = new int[level + 1][];
+		System.arraycopy(mMinIndex, 0, minIndex, 0, level);
+		System.arraycopy(mMaxIndex, 0, maxIndex, 0, level);
+		minIndex[level] = new int[4];
+		maxIndex[level] = new int[4];
+		if (level > 0) {
+			// bucket 0 covers the points before index, merge from the level below
+			int[] lowerMin = minIndex[level - 1];
+			int[] lowerMax = maxIndex[level - 1];
+			minIndex[level][0] = values[lowerMin[1]] < values[lowerMin[0]] ? lowerMin[1] : lowerMin[0];
+			maxIndex[level][0] = values[lowerMax[1]] > values[lowerMax[0]] ? lowerMax[1] : lowerMax[0];
+		} else {
+			int min = 0;
+			int max = 0;
+			for (int i = 1; i < index; i++) {
+				if (values[i] < values[min]) {
+					min = i;
+				}
+				if (values[i] > values[max]) {
+					max = i;
+				}
+			}
+			minIndex[level][0] = min;
+			maxIndex[level][0] = max;
+		}
+		mMinIndex = minIndex;
+		mMaxIndex = maxIndex;
+	}
+
+	private static int[] ensureBucket(int[][] levels, int level, int bucket) {
+		int[] buckets = levels[level];
+		if (bucket >= buckets.length) {
+			int[] grown = new int[Math.max(buckets.length * 2, bucket + 1)];
+			System.arraycopy(buckets, 0, grown, 0, buckets.length);
+			levels[level] = buckets = grown;
+		}
+		return buckets;
+	}
+
+	/**
+	 * @param points
+	 *            number of visible data points
+	 * @param pixels
+	 *            width in pixels the data points are drawn on
+	 * @return level with about one bucket per pixel, 0 if there are less than
+	 *         two data points per pixel
+	 */
+	static int levelFor(int points, double pixels) {
+		if (!(pixels > 0)) {
+			return 0;
+		}
+		double pointsPerPixel = points / pixels;
+		int level = 0;
+		while (level < 30 && 1 << (level + 1) <= pointsPerPixel) {
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * @return highest level that is available
+	 */
+	int getMaxLevel() {
+		return MIN_LEVEL + mMinIndex.length - 1;
+	}
+
+	/**
+	 * @return index of the smallest y value in the bucket, level must be
+	 *         between {@link #MIN_LEVEL} and {@link #getMaxLevel()}
+	 */
+	int getMinIndex(int level, int bucket) {
+		return mMinIndex[level - MIN_LEVEL][bucket];
+	}
+
+	/**
+	 * @return index of the largest y value in the bucket
+	 */
+	int getMaxIndex(int level, int bucket) {
+		return mMaxIndex[level - MIN_LEVEL][bucket];
+	}
+}
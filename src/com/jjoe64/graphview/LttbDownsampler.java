@@ -0,0 +1,131 @@
+package com.jjoe64.graphview;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling. selects a subset of the data
+ * points of a series that keeps the visual shape of the line. the first and
+ * the last point are always kept, from every bucket in between the point
+ * that forms the largest triangle with the previously selected point and the
+ * average of the next bucket is kept.
+ *
+ * an instance caches the selection of the last call, so redrawing the same
+ * data with the same viewport costs nothing.
+ */
+public final class LttbDownsampler {
+	private int[] mIndices = new int[0];
+	private int mCount;
+
+	/** cache key */
+	private GraphViewSeries mSeries;
+	private int mVersion;
+	private int mStart;
+	private int mEnd;
+	private int mThreshold;
+
+	/**
+	 * downsamples the data points start (inclusive) to end (exclusive) of the
+	 * series. the result is cached until the series, its data or the
+	 * arguments change.
+	 *
+	 * @param series
+	 * @param start
+	 * @param end
+	 * @param threshold
+	 *            maximum number of data points to keep
+	 * @return number of selected data points, their indices are available via
+	 *         {@link #getIndices()}
+	 */
+	public int downsample(GraphViewSeries series, int start, int end, int threshold) {
+		int version = series.getVersion();
+		if (series == mSeries && version == mVersion && start == mStart && end == mEnd && threshold == mThreshold) {
+			return mCount;
+		}
+		int size = Math.min(end - start, Math.max(threshold, 3));
+		if (mIndices.length < size) {
+			mIndices = new int[size];
+		}
+		mCount = downsample(series, start, end, threshold, mIndices);
+		mSeries = series;
+		mVersion = version;
+		mStart = start;
+		mEnd = end;
+		mThreshold = threshold;
+		return mCount;
+	}
+
+	/**
+	 * @return indices of the data points selected by the last call of
+	 *         {@link #downsample(GraphViewSeries, int, int, int)}, sorted
+	 *         ascending
+	 */
+	public int[] getIndices() {
+		return mIndices;
+	}
+
+	/**
+	 * selects at most threshold data points of the range start (inclusive) to
+	 * end (exclusive). if the range is not larger than threshold, all indices
+	 * are returned.
+	 *
+	 * @param series
+	 * @param start
+	 * @param end
+	 * @param threshold
+	 *            maximum number of data points, values below 3 are treated as 3
+	 * @param indices
+	 *            receives the selected indices, must be large enough for
+	 *            min(end - start, max(threshold, 3)) entries
+	 * @return number of selected indices
+	 */
+	public static int downsample(GraphViewSeries series, int start, int end, int threshold, int[] indices) {
+		int count = end - start;
+		threshold = Math.max(threshold, 3);
+		if (count <= threshold) {
+			for (int i = 0; i < count; i++) {
+				indices[i] = start + i;
+			}
+			return count;
+		}
+
+		// the first and the last point are fixed, the others are split into
+		// threshold - 2 buckets
+		double every = (double) (count - 2) / (threshold - 2);
+		int a = start;
+		int n = 0;
+		indices[n++] = a;
+
+		for (int i = 0; i < threshold - 2; i++) {
+			// average of the next bucket
+			int avgStart = start + (int) ((i + 1) * every) + 1;
+			int avgEnd = Math.min(start + (int) ((i + 2) * every) + 1, end);
+			double avgX = 0;
+			double avgY = 0;
+			for (int j = avgStart; j < avgEnd; j++) {
+				avgX += series.getX(j);
+				avgY += series.getY(j);
+			}
+			int avgLength = avgEnd - avgStart;
+			avgX /= avgLength;
+			avgY /= avgLength;
+
+			// point of the current bucket with the largest triangle
+			int rangeStart = start + (int) (i * every) + 1;
+			int rangeEnd = start + (int) ((i + 1) * every) + 1;
+			double ax = series.getX(a);
+			double ay = series.getY(a);
+			double maxArea = -1;
+			int next = rangeStart;
+			for (int j = rangeStart; j < rangeEnd; j++) {
+				double area = Math.abs((ax - avgX) * (series.getY(j) - ay) - (ax - series.getX(j)) * (avgY - ay));
+				if (area > maxArea) {
+					maxArea = area;
+					next = j;
+				}
+			}
+			indices[n++] = next;
+			a = next;
+		}
+
+		indices[n++] = end - 1;
+		return n;
+	}
+}
@@ -0,0 +1,212 @@
+package com.jjoe64.graphview;
+
+/**
+ * M4 aggregation. the data points are grouped by the pixel column they fall
+ * into and only the first, the last, the minimum and the maximum point of
+ * every column are kept. a line through the kept points rasterizes exactly
+ * like a line through all data points, so single spikes are never lost.
+ *
+ * if a level of detail is given, the aggregation reads the buckets of the
+ * series' {@link LodPyramid} instead of every data point, so the work only
+ * depends on the width of the graph.
+ *
+ * the result is written as screen coordinates (x, y pairs) into a reused
+ * float array, no objects are allocated per data point. an instance caches
+ * the result of the last call.
+ */
+public final class M4Aggregator {
+	private float[] mVertices = new float[0];
+	private int mCount;
+
+	/** cache key */
+	private GraphViewSeries mSeries;
+	private int mVersion;
+	private int mStart;
+	private int mEnd;
+	private int mLevel;
+	private double mMinX;
+	private double mMinY;
+	private double mDiffX;
+	private double mDiffY;
+	private float mGraphwidth;
+	private float mGraphheight;
+	private float mBorder;
+	private float mHorstart;
+
+	/** transformation of the current call */
+	private double mScaleX;
+	private double mScaleY;
+	private int mLastColumn;
+
+	/** the pixel column that is currently aggregated */
+	private int mColumn;
+	private int mFirst, mLast, mMin, mMax;
+	private double mMinValue, mMaxValue;
+
+	/**
+	 * aggregates the data points start (inclusive) to end (exclusive) of the
+	 * series and transforms them into screen space. the parameters are the
+	 * same as for
+	 * {@link GraphView#drawSeries(android.graphics.Canvas, int, GraphViewSeries, int, int, float, float, float, double, double, double, double, float)}.
+	 * y values outside of minY..minY+diffY are clamped to the graph area.
+	 *
+	 * @param level
+	 *            level of detail, see
+	 *            {@link GraphView#getLevelOfDetail(GraphViewSeries, int, int)}.
+	 *            0 aggregates every data point.
+	 * @return number of vertices, their coordinates are available via
+	 *         {@link #getVertices()}
+	 */
+	public int aggregate(GraphViewSeries series, int start, int end, int level, float graphwidth, float graphheight, float border, double minX, double minY, double diffX, double diffY, float horstart) {
+		int version = series.getVersion();
+		if (series == mSeries && version == mVersion && start == mStart && end == mEnd && level == mLevel && minX == mMinX && minY == mMinY && diffX == mDiffX && diffY == mDiffY
+				&& graphwidth == mGraphwidth && graphheight == mGraphheight && border == mBorder && horstart == mHorstart) {
+			return mCount;
+		}
+		mSeries = series;
+		mVersion = version;
+		mStart = start;
+		mEnd = end;
+		mLevel = level;
+		mMinX = minX;
+		mMinY = minY;
+		mDiffX = diffX;
+		mDiffY = diffY;
+		mGraphwidth = graphwidth;
+		mGraphheight = graphheight;
+		mBorder = border;
+		mHorstart = horstart;
+
+		// at most 4 vertices per pixel column plus the columns left and
+		// right of the graph
+		int columns = (int) Math.ceil(graphwidth) + 3;
+		int size = 2 * Math.min(end - start, 4 * columns);
+		if (mVertices.length < size) {
+			mVertices = new float[size];
+		}
+		mScaleX = graphwidth / diffX;
+		mScaleY = graphheight / diffY;
+		mLastColumn = columns - 2;
+		mColumn = Integer.MIN_VALUE;
+		mFirst = -1;
+		mCount = 0;
+
+		int i = start;
+		if (level >= LodPyramid.MIN_LEVEL && start < end) {
+			// the writer extends the pyramid under the series lock
+			synchronized (series) {
+				i = aggregateBuckets(series, start, end, level);
+			}
+		}
+		for (; i < end; i++) {
+			accumulate(series, i);
+		}
+		flush(series);
+		return mCount;
+	}
+
+	/**
+	 * aggregates the complete buckets of the series' pyramid that end before
+	 * end. buckets that are not complete may contain data points that were
+	 * appended after the snapshot of this thread.
+	 * 
+	 * @return index of the first data point that was not aggregated
+	 */
+	private int aggregateBuckets(GraphViewSeries series, int start, int end, int level) {
+		LodPyramid pyramid = series.getLodPyramid();
+		if (pyramid == null) {
+			return start;
+		}
+		level = Math.min(level, pyramid.getMaxLevel());
+		int bucket = start >> level;
+		for (; (bucket + 1) << level <= end; bucket++) {
+			// the candidates of a bucket in index order
+			int first = bucket << level;
+			int last = ((bucket + 1) << level) - 1;
+			int min = pyramid.getMinIndex(level, bucket);
+			int max = pyramid.getMaxIndex(level, bucket);
+			int lower = Math.min(min, max);
+			int upper = Math.max(min, max);
+			accumulate(series, first);
+			if (lower != first) {
+				accumulate(series, lower);
+			}
+			if (upper != lower && upper != first) {
+				accumulate(series, upper);
+			}
+			if (last != upper && last != first) {
+				accumulate(series, last);
+			}
+		}
+		return Math.max(bucket << level, start);
+	}
+
+	private void accumulate(GraphViewSeries series, int i) {
+		double y = series.getY(i);
+		double pos = (series.getX(i) - mMinX) * mScaleX;
+		// everything outside of the graph is merged into one column on each
+		// side
+		int col = pos < 0 ? -1 : pos >= mLastColumn ? mLastColumn : (int) pos;
+		if (col != mColumn) {
+			flush(series);
+			mColumn = col;
+			mFirst = mLast = mMin = mMax = i;
+			mMinValue = mMaxValue = y;
+		} else {
+			mLast = i;
+			if (y < mMinValue) {
+				mMinValue = y;
+				mMin = i;
+			}
+			if (y > mMaxValue) {
+				mMaxValue = y;
+				mMax = i;
+			}
+		}
+	}
+
+	/**
+	 * emits the vertices of the current column sorted by index
+	 */
+	private void flush(GraphViewSeries series) {
+		if (mFirst == -1) {
+			return;
+		}
+		emit(series, mFirst);
+		int lower = Math.min(mMin, mMax);
+		int upper = Math.max(mMin, mMax);
+		if (lower != mFirst) {
+			emit(series, lower);
+		}
+		if (upper != lower && upper != mFirst) {
+			emit(series, upper);
+		}
+		if (mLast != upper && mLast != mFirst) {
+			emit(series, mLast);
+		}
+		mFirst = -1;
+	}
+
+	private void emit(GraphViewSeries series, int index) {
+		if (2 * mCount + 2 > mVertices.length) {
+			float[] vertices = new float[Math.max(mVertices.length * 2, 16)];
+			System.arraycopy(mVertices, 0, vertices, 0, 2 * mCount);
+			mVertices = vertices;
+		}
+		float top = mBorder;
+		float bottom = mBorder + mGraphheight;
+		float y = (float) (mGraphheight - (series.getY(index) - mMinY) * mScaleY) + top;
+		mVertices[2 * mCount] = (float) ((series.getX(index) - mMinX) * mScaleX) + mHorstart;
+		mVertices[2 * mCount + 1] = y < top ? top : y > bottom ? bottom : y;
+		mCount++;
+	}
+
+	/**
+	 * @return vertices of the last call of
+	 *         {@link #aggregate(GraphViewSeries, int, int, int, float, float, float, double, double, double, double, float)}
+	 *         as x, y pairs in screen coordinates
+	 */
+	public float[] getVertices() {
+		return mVertices;
+	}
+}
@@ -0,0 +1,377 @@
+package com.jjoe64.graphview;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+
+/**
+ * a graph series backed by a memory mapped file, for histories larger than
+ * the heap. the data points are read from the file on access, viewport
+ * slicing and {@link #getNearestValue(double)} binary search the file
+ * directly. the heap usage does not depend on the number of data points.
+ *
+ * the file holds a header followed by (x, y) records sorted by x, as
+ * little-endian doubles:
+ *
+ * <pre>
+ * int    magic 'GVMS'
+ * int    format version, 1
+ * long   number of records
+ * 16     reserved
+ * (double x, double y) * number of records
+ * </pre>
+ *
+ * the file can only grow: data points are appended, but not removed.
+ * appends are visible to readers like with {@link GraphViewSeries}. opening
+ * a file scans it once to compute the bounds. a file holds at most 2 GB of
+ * records, about 134 million data points.
+ */
+public class MappedGraphViewSeries extends GraphViewSeries {
+	private static final int MAGIC = 0x47564D53;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int COUNT_OFFSET = 8;
+	private static final int RECORD_SIZE = 16;
+	/** the mapping grows by at least this many records */
+	private static final int MIN_GROWTH = 1 << 16;
+	/** number of blocks of the min/max index, the blocks grow with the data */
+	private static final int MAX_BLOCKS = 4096;
+	private static final double[] NO_VALUES = new double[0];
+
+	private final File mFile;
+	private final RandomAccessFile mRandomAccessFile;
+	private final FileChannel mChannel;
+	/** replaced when the file grows, older mappings stay valid for readers */
+	private volatile MappedByteBuffer mBuffer;
+	/** writer state */
+	private int mCount;
+	private double mMinY;
+	private double mMaxY;
+	/** min/max y per block of 1 &lt;&lt; mBlockShift records */
+	private final double[] mBlockMin = new double[MAX_BLOCKS];
+	private final double[] mBlockMax = new double[MAX_BLOCKS];
+	private int mBlockShift = 10;
+
+	public MappedGraphViewSeries(File file) throws IOException {
+		this(file, null, null);
+	}
+
+	/**
+	 * opens the file, or creates it if it does not exist or is empty
+	 *
+	 * @param file
+	 * @param description
+	 * @param color
+	 * @throws IOException
+	 *             if the file cannot be mapped or is not a series file
+	 */
+	public MappedGraphViewSeries(File file, String description, Integer color) throws IOException {
+		super(description, color, Collections.<GraphViewData> emptyList());
+		mFile = file;
+		mRandomAccessFile = new RandomAccessFile(file, "rw");
+		mChannel = mRandomAccessFile.getChannel();
+		try {
+			if (mChannel.size() == 0) {
+				map(0);
+				mBuffer.putInt(0, MAGIC);
+				mBuffer.putInt(4, FORMAT_VERSION);
+				mBuffer.putLong(COUNT_OFFSET, 0);
+			} else {
+				// check the header before mapping, mapping grows the file
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				if (mChannel.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+					throw new IOException(file + " is not a series file of version " + FORMAT_VERSION);
+				}
+				long count = header.getLong(COUNT_OFFSET);
+				if (count < 0 || HEADER_SIZE + count * RECORD_SIZE > mChannel.size()) {
+					throw new IOException(file + " is truncated, header says " + count + " records");
+				}
+				map((int) count);
+				for (int i = 0; i < count; i++) {
+					include(i, mBuffer.getDouble(HEADER_SIZE + i * RECORD_SIZE + 8));
+				}
+				mCount = (int) count;
+			}
+		} catch (IOException e) {
+			mRandomAccessFile.close();
+			throw e;
+		}
+		publish();
+	}
+
+	public File getFile() {
+		return mFile;
+	}
+
+	/**
+	 * maps the file with room for at least capacity records
+	 */
+	private void map(int capacity) throws IOException {
+		MappedByteBuffer buffer = mBuffer;
+		int mapped = buffer == null ? 0 : (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+		if (buffer != null && capacity <= mapped) {
+			return;
+		}
+		long records = Math.max(capacity, Math.max(mapped + (mapped >> 1), MIN_GROWTH));
+		long size = Math.min(HEADER_SIZE + records * RECORD_SIZE, Integer.MAX_VALUE);
+		if (HEADER_SIZE + (long) capacity * RECORD_SIZE > size) {
+			throw new IOException(mFile + " cannot hold more than " + (size - HEADER_SIZE) / RECORD_SIZE + " records");
+		}
+		buffer = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		mBuffer = buffer;
+	}
+
+	/**
+	 * adds a y value to the bounds and to the block index
+	 */
+	private void include(int index, double y) {
+		int block = index >> mBlockShift;
+		if (block == MAX_BLOCKS) {
+			// merge pairs of blocks, the index keeps its size
+			for (int i = 0; i < MAX_BLOCKS / 2; i++) {
+				mBlockMin[i] = Math.min(mBlockMin[2 * i], mBlockMin[2 * i + 1]);
+				mBlockMax[i] = Math.max(mBlockMax[2 * i], mBlockMax[2 * i + 1]);
+			}
+			mBlockShift++;
+			block = index >> mBlockShift;
+		}
+		if ((index & ((1 << mBlockShift) - 1)) == 0) {
+			mBlockMin[block] = y;
+			mBlockMax[block] = y;
+		} else {
+			mBlockMin[block] = Math.min(mBlockMin[block], y);
+			mBlockMax[block] = Math.max(mBlockMax[block], y);
+		}
+		if (index == 0) {
+			mMinY = y;
+			mMaxY = y;
+		} else {
+			mMinY = Math.min(mMinY, y);
+			mMaxY = Math.max(mMaxY, y);
+		}
+	}
+
+	private double lastX() {
+		return mCount > 0 ? mBuffer.getDouble(HEADER_SIZE + (mCount - 1) * RECORD_SIZE) : Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * makes room for len more records
+	 */
+	private void ensureCapacity(int len) {
+		try {
+			map(mCount + len);
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot grow " + mFile, e);
+		}
+	}
+
+	/**
+	 * writes a record behind the published data
+	 */
+	private void write(int index, double x, double y) {
+		int position = HEADER_SIZE + index * RECORD_SIZE;
+		mBuffer.putDouble(position, x);
+		mBuffer.putDouble(position + 8, y);
+		include(index, y);
+	}
+
+	/**
+	 * publishes the records written behind the data
+	 */
+	private void commit(int count) {
+		mCount = count;
+		mBuffer.putLong(COUNT_OFFSET, count);
+		notifyDataChanged();
+	}
+
+	/**
+	 * appends a data point to the file
+	 *
+	 * @param x
+	 *            must not be smaller than the last x value of the series
+	 * @param y
+	 */
+	@Override
+	public synchronized void add(double x, double y) {
+		double lastX = lastX();
+		if (x < lastX) {
+			throw new IllegalArgumentException(x + "<" + lastX + "! x value must be larger than the last x values in the series");
+		}
+		ensureCapacity(1);
+		write(mCount, x, y);
+		commit(mCount + 1);
+	}
+
+	@Override
+	public synchronized void addAll(double[] xs, double[] ys, int off, int len) {
+		checkBatch(xs, ys, off, len, lastX());
+		if (len == 0) {
+			return;
+		}
+		ensureCapacity(len);
+		for (int i = 0; i < len; i++) {
+			write(mCount + i, xs[off + i], ys[off + i]);
+		}
+		commit(mCount + len);
+	}
+
+	@Override
+	public synchronized void addAll(DoubleBuffer xs, DoubleBuffer ys) {
+		int len = checkBuffers(xs, ys);
+		int xsPosition = xs.position();
+		int ysPosition = ys.position();
+		double lastX = lastX();
+		for (int i = xsPosition; i < xsPosition + len; i++) {
+			double x = xs.get(i);
+			if (x < lastX) {
+				throw new IllegalArgumentException(x + "<" + lastX + "! x value must be larger than the last x values in the series");
+			}
+			lastX = x;
+		}
+		if (len == 0) {
+			return;
+		}
+		ensureCapacity(len);
+		for (int i = 0; i < len; i++) {
+			write(mCount + i, xs.get(xsPosition + i), ys.get(ysPosition + i));
+		}
+		xs.position(xsPosition + len);
+		ys.position(ysPosition + len);
+		commit(mCount + len);
+	}
+
+	@Override
+	public synchronized void addAll(DoubleBuffer xy) {
+		int len = checkInterleaved(xy);
+		int position = xy.position();
+		double lastX = lastX();
+		for (int i = 0; i < len; i++) {
+			double x = xy.get(position + 2 * i);
+			if (x < lastX) {
+				throw new IllegalArgumentException(x + "<" + lastX + "! x value must be larger than the last x values in the series");
+			}
+			lastX = x;
+		}
+		if (len == 0) {
+			return;
+		}
+		ensureCapacity(len);
+		for (int i = 0; i < len; i++) {
+			write(mCount + i, xy.get(position + 2 * i), xy.get(position + 2 * i + 1));
+		}
+		xy.position(position + 2 * len);
+		commit(mCount + len);
+	}
+
+	/**
+	 * not supported, the file only grows
+	 */
+	@Override
+	public void removeRange(int start, int end) {
+		throw new UnsupportedOperationException("data points cannot be removed from a mapped series");
+	}
+
+	/**
+	 * not supported, the file only grows
+	 */
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("a mapped series cannot be cleared");
+	}
+
+	/**
+	 * not supported, the file only grows
+	 */
+	@Override
+	void replaceData(double[] xs, double[] ys, int len) {
+		throw new UnsupportedOperationException("the data of a mapped series cannot be replaced");
+	}
+
+	/**
+	 * writes the appended data points to the storage device
+	 */
+	public synchronized void sync() {
+		mBuffer.force();
+	}
+
+	/**
+	 * syncs and closes the file. the series must not be used afterwards.
+	 */
+	public synchronized void close() throws IOException {
+		mBuffer.force();
+		mRandomAccessFile.close();
+	}
+
+	@Override
+	Data snapshot() {
+		if (mCount == 0) {
+			return newData(NO_VALUES, NO_VALUES, 0, 0, DEFAULT_MIN_X, DEFAULT_MAX_X, DEFAULT_MIN_Y, DEFAULT_MAX_Y, 0);
+		}
+		return newData(NO_VALUES, NO_VALUES, 0, mCount, mBuffer.getDouble(HEADER_SIZE), lastX(), mMinY, mMaxY, 0);
+	}
+
+	@Override
+	double xAt(Data data, int index) {
+		if (index < 0 || index >= data.size) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + data.size);
+		}
+		// the mapping is read after the snapshot, it covers all of its records
+		return mBuffer.getDouble(HEADER_SIZE + index * RECORD_SIZE);
+	}
+
+	@Override
+	double yAt(Data data, int index) {
+		if (index < 0 || index >= data.size) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + data.size);
+		}
+		return mBuffer.getDouble(HEADER_SIZE + index * RECORD_SIZE + 8);
+	}
+
+	/**
+	 * uses the block index for whole blocks and reads only the records of
+	 * the partial blocks at both ends from the file
+	 */
+	@Override
+	public synchronized void getMinMaxY(int start, int end, double[] result) {
+		Data data = data();
+		result[0] = Double.POSITIVE_INFINITY;
+		result[1] = Double.NEGATIVE_INFINITY;
+		end = Math.min(end, data.size);
+		int blockSize = 1 << mBlockShift;
+		int i = start;
+		while (i < end) {
+			// blocks below the size of the snapshot are complete and never change
+			if ((i & (blockSize - 1)) == 0 && i + blockSize <= end) {
+				int block = i >> mBlockShift;
+				result[0] = Math.min(result[0], mBlockMin[block]);
+				result[1] = Math.max(result[1], mBlockMax[block]);
+				i += blockSize;
+			} else {
+				double y = yAt(data, i);
+				if (y < result[0]) {
+					result[0] = y;
+				}
+				if (y > result[1]) {
+					result[1] = y;
+				}
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * the pyramid would live on the heap, so there is none
+	 */
+	@Override
+	LodPyramid getLodPyramid() {
+		return null;
+	}
+}
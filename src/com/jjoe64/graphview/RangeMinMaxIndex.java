@@ -0,0 +1,147 @@
+package com.jjoe64.graphview;
+
+/**
+ * answers min/max queries over a range of an array in O(log n). the array
+ * is split into blocks of {@link #BLOCK_SIZE} values, a segment tree over the
+ * blocks holds their min and max. partial blocks at the ends of a query are
+ * scanned directly, so the index needs much less memory than the data.
+ *
+ * a block aggregate always reflects all values of the block as they were at
+ * the last update, so it is only used if the block lies completely inside
+ * the queried range.
+ */
+final class RangeMinMaxIndex {
+	static final int BLOCK_SHIFT = 5;
+	static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+	/** number of leaves (blocks), always a power of two */
+	private int mLeaves;
+	/** tree nodes, the root is at 1, leaves at mLeaves..2*mLeaves-1 */
+	private double[] mMin;
+	private double[] mMax;
+
+	/**
+	 * builds the index for the first size values
+	 */
+	RangeMinMaxIndex(double[] values, int size) {
+		allocate(values.length);
+		for (int i = 0; i < size; i++) {
+			includeLeaf(mLeaves + (i >> BLOCK_SHIFT), values[i]);
+		}
+		rebuildNodes();
+	}
+
+	private void allocate(int capacity) {
+		int blocks = (capacity + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+		int leaves = 1;
+		while (leaves < blocks) {
+			leaves <<= 1;
+		}
+		mLeaves = leaves;
+		mMin = new double[2 * leaves];
+		mMax = new double[2 * leaves];
+		for (int i = 0; i < 2 * leaves; i++) {
+			mMin[i] = Double.POSITIVE_INFINITY;
+			mMax[i] = Double.NEGATIVE_INFINITY;
+		}
+	}
+
+	private void includeLeaf(int leaf, double value) {
+		if (value < mMin[leaf]) {
+			mMin[leaf] = value;
+		}
+		if (value > mMax[leaf]) {
+			mMax[leaf] = value;
+		}
+	}
+
+	private void rebuildNodes() {
+		for (int node = mLeaves - 1; node > 0; node--) {
+			mMin[node] = Math.min(mMin[2 * node], mMin[2 * node + 1]);
+			mMax[node] = Math.max(mMax[2 * node], mMax[2 * node + 1]);
+		}
+	}
+
+	/**
+	 * grows the index so that it covers at least capacity values
+	 */
+	void ensureCapacity(int capacity) {
+		if (capacity > mLeaves << BLOCK_SHIFT) {
+			double[] min = mMin;
+			double[] max = mMax;
+			int leaves = mLeaves;
+			allocate(capacity);
+			System.arraycopy(min, leaves, mMin, mLeaves, leaves);
+			System.arraycopy(max, leaves, mMax, mLeaves, leaves);
+			rebuildNodes();
+		}
+	}
+
+	/**
+	 * a value was written to a position that did not hold a value before
+	 */
+	void include(int pos, double value) {
+		int node = mLeaves + (pos >> BLOCK_SHIFT);
+		while (node > 0 && (value < mMin[node] || value > mMax[node])) {
+			includeLeaf(node, value);
+			node >>= 1;
+		}
+	}
+
+	/**
+	 * combines the min and max of values[from..to) into result
+	 * @param values
+	 * @param from inclusive
+	 * @param to exclusive
+	 * @param result result[0] = min, result[1] = max. not reset, the range is merged into it
+	 */
+	void query(double[] values, int from, int to, double[] result) {
+		double min = result[0];
+		double max = result[1];
+		int firstBlock = (from + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+		int lastBlock = to >> BLOCK_SHIFT;
+		if (firstBlock >= lastBlock) {
+			// no complete block
+			for (int i = from; i < to; i++) {
+				if (values[i] < min) {
+					min = values[i];
+				}
+				if (values[i] > max) {
+					max = values[i];
+				}
+			}
+		} else {
+			for (int i = from; i < firstBlock << BLOCK_SHIFT; i++) {
+				if (values[i] < min) {
+					min = values[i];
+				}
+				if (values[i] > max) {
+					max = values[i];
+				}
+			}
+			for (int i = lastBlock << BLOCK_SHIFT; i < to; i++) {
+				if (values[i] < min) {
+					min = values[i];
+				}
+				if (values[i] > max) {
+					max = values[i];
+				}
+			}
+			// complete blocks, bottom up
+			for (int l = firstBlock + mLeaves, r = lastBlock + mLeaves; l < r; l >>= 1, r >>= 1) {
+				if ((l & 1) == 1) {
+					min = Math.min(min, mMin[l]);
+					max = Math.max(max, mMax[l]);
+					l++;
+				}
+				if ((r & 1) == 1) {
+					r--;
+					min = Math.min(min, mMin[r]);
+					max = Math.max(max, mMax[r]);
+				}
+			}
+		}
+		result[0] = min;
+		result[1] = max;
+	}
+}
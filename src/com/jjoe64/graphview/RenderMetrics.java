@@ -0,0 +1,330 @@
+package com.jjoe64.graphview;
+
+import java.util.Arrays;
+
+/**
+ * measures the frames drawn by a GraphView, see
+ * {@link GraphView#setRenderMetrics(RenderMetrics)}. every frame records the
+ * time spent per {@link Phase} and per series, the number of data points in
+ * the viewport and the number of points actually drawn.
+ *
+ * the last frames are kept in a rolling window, {@link #snapshot()} computes
+ * the percentiles over it and can be called from any thread. a listener is
+ * called on the UI thread after every frame. one instance per GraphView.
+ */
+public final class RenderMetrics {
+	public enum Phase {
+		/** generating the horizontal and vertical labels */
+		LABELS,
+		/** finding the visible data of the series */
+		SLICING,
+		/** drawSeries or drawPreparedSeries of all series, or the tiles */
+		SERIES,
+		/** drawLegend */
+		LEGEND,
+		/**
+		 * the whole onDraw of the plot area. the vertical labels are drawn by
+		 * their own view and only counted in LABELS.
+		 */
+		FRAME
+	}
+
+	public interface Listener {
+		/**
+		 * called on the UI thread, with the GraphView lock held
+		 *
+		 * @param frame
+		 *            reused for the next frame, copy what you keep
+		 */
+		void onFrame(Frame frame);
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+
+	/**
+	 * measurements of one frame
+	 */
+	public static final class Frame {
+		private final long[] mNanos = new long[PHASES.length];
+		private long[] mSeriesNanos = new long[0];
+		private int mSeriesCount;
+		private int mPointsIn;
+		private int mPointsDrawn;
+
+		public long getNanos(Phase phase) {
+			return mNanos[phase.ordinal()];
+		}
+
+		/**
+		 * @return index of the last drawn series + 1
+		 */
+		public int getSeriesCount() {
+			return mSeriesCount;
+		}
+
+		/**
+		 * @param index
+		 *            index of the series in the GraphView
+		 * @return time spent drawing the series, 0 if it was not drawn
+		 */
+		public long getSeriesNanos(int index) {
+			return index < mSeriesCount ? mSeriesNanos[index] : 0;
+		}
+
+		/**
+		 * @return data points inside the viewport
+		 */
+		public int getPointsIn() {
+			return mPointsIn;
+		}
+
+		/**
+		 * @return data points drawn after downsampling
+		 */
+		public int getPointsDrawn() {
+			return mPointsDrawn;
+		}
+
+		/**
+		 * @return points drawn / points in, 1 if nothing was drawn
+		 */
+		public double getDecimationRatio() {
+			return ratio(mPointsDrawn, mPointsIn);
+		}
+
+		private void clear() {
+			Arrays.fill(mNanos, 0);
+			Arrays.fill(mSeriesNanos, 0, mSeriesCount, 0);
+			mSeriesCount = 0;
+			mPointsIn = 0;
+			mPointsDrawn = 0;
+		}
+	}
+
+	/**
+	 * percentiles over the rolling window, immutable
+	 */
+	public static final class Snapshot {
+		private final int mFrames;
+		/** p50, p95 and p99 per phase */
+		private final long[] mPercentiles;
+		private final long mPointsIn;
+		private final long mPointsDrawn;
+
+		private Snapshot(int frames, long[] percentiles, long pointsIn, long pointsDrawn) {
+			mFrames = frames;
+			mPercentiles = percentiles;
+			mPointsIn = pointsIn;
+			mPointsDrawn = pointsDrawn;
+		}
+
+		/**
+		 * @return number of frames in the window
+		 */
+		public int getFrameCount() {
+			return mFrames;
+		}
+
+		public long getP50(Phase phase) {
+			return mPercentiles[3 * phase.ordinal()];
+		}
+
+		public long getP95(Phase phase) {
+			return mPercentiles[3 * phase.ordinal() + 1];
+		}
+
+		public long getP99(Phase phase) {
+			return mPercentiles[3 * phase.ordinal() + 2];
+		}
+
+		/**
+		 * @return data points inside the viewport, summed over the window
+		 */
+		public long getPointsIn() {
+			return mPointsIn;
+		}
+
+		/**
+		 * @return data points drawn, summed over the window
+		 */
+		public long getPointsDrawn() {
+			return mPointsDrawn;
+		}
+
+		/**
+		 * @return points drawn / points in over the window, 1 if nothing was
+		 *         drawn
+		 */
+		public double getDecimationRatio() {
+			return ratio(mPointsDrawn, mPointsIn);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("frames=").append(mFrames);
+			for (int p = 0; p < PHASES.length; p++) {
+				builder.append(' ').append(PHASES[p].name().toLowerCase()).append("_us=");
+				builder.append(mPercentiles[3 * p] / 1000).append('/');
+				builder.append(mPercentiles[3 * p + 1] / 1000).append('/');
+				builder.append(mPercentiles[3 * p + 2] / 1000);
+			}
+			builder.append(" points=").append(mPointsDrawn).append('/').append(mPointsIn);
+			return builder.toString();
+		}
+	}
+
+	private final int mWindowSize;
+	/** per phase, the last mWindowSize frames */
+	private final long[][] mWindow;
+	private final int[] mWindowPointsIn;
+	private final int[] mWindowPointsDrawn;
+	private int mNext;
+	private int mCount;
+	private long mTotalFrames;
+	private volatile Listener mListener;
+	/** the frame being drawn, only touched by the UI thread */
+	private final Frame mCurrent = new Frame();
+
+	public RenderMetrics() {
+		this(120);
+	}
+
+	/**
+	 * @param windowSize
+	 *            number of frames the percentiles are computed over
+	 */
+	public RenderMetrics(int windowSize) {
+		if (windowSize <= 0) {
+			throw new IllegalArgumentException("windowSize must be > 0");
+		}
+		mWindowSize = windowSize;
+		mWindow = new long[PHASES.length][windowSize];
+		mWindowPointsIn = new int[windowSize];
+		mWindowPointsDrawn = new int[windowSize];
+	}
+
+	public void setListener(Listener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * adds the time since start to a phase of the current frame
+	 *
+	 * @return now, the start of the next measurement
+	 */
+	long record(Phase phase, long start) {
+		long now = System.nanoTime();
+		mCurrent.mNanos[phase.ordinal()] += now - start;
+		return now;
+	}
+
+	/**
+	 * adds the time since start to the SERIES phase and to the series
+	 *
+	 * @return now, the start of the next measurement
+	 */
+	long recordSeries(int index, long start, int pointsIn, int pointsDrawn) {
+		long now = System.nanoTime();
+		Frame frame = mCurrent;
+		if (frame.mSeriesNanos.length <= index) {
+			long[] grown = new long[index + 4];
+			System.arraycopy(frame.mSeriesNanos, 0, grown, 0, frame.mSeriesCount);
+			frame.mSeriesNanos = grown;
+		}
+		frame.mSeriesCount = Math.max(frame.mSeriesCount, index + 1);
+		frame.mSeriesNanos[index] += now - start;
+		frame.mNanos[Phase.SERIES.ordinal()] += now - start;
+		frame.mPointsIn += pointsIn;
+		frame.mPointsDrawn += pointsDrawn;
+		return now;
+	}
+
+	/**
+	 * closes the current frame
+	 *
+	 * @param start
+	 *            System.nanoTime() at the start of onDraw
+	 */
+	void endFrame(long start) {
+		Frame frame = mCurrent;
+		record(Phase.FRAME, start);
+		synchronized (this) {
+			for (int p = 0; p < PHASES.length; p++) {
+				mWindow[p][mNext] = frame.mNanos[p];
+			}
+			mWindowPointsIn[mNext] = frame.mPointsIn;
+			mWindowPointsDrawn[mNext] = frame.mPointsDrawn;
+			mNext = (mNext + 1) % mWindowSize;
+			mCount = Math.min(mCount + 1, mWindowSize);
+			mTotalFrames++;
+		}
+		Listener listener = mListener;
+		if (listener != null) {
+			listener.onFrame(frame);
+		}
+		frame.clear();
+	}
+
+	/**
+	 * @return number of frames measured since the creation or the last
+	 *         {@link #reset()}
+	 */
+	public synchronized long getTotalFrameCount() {
+		return mTotalFrames;
+	}
+
+	/**
+	 * drops the window
+	 */
+	public synchronized void reset() {
+		mNext = 0;
+		mCount = 0;
+		mTotalFrames = 0;
+	}
+
+	/**
+	 * computes the percentiles over the window. sorts a copy of it, so call
+	 * it every few seconds rather than every frame.
+	 */
+	public Snapshot snapshot() {
+		int count;
+		long[][] values = new long[PHASES.length][];
+		long pointsIn = 0;
+		long pointsDrawn = 0;
+		synchronized (this) {
+			count = mCount;
+			for (int p = 0; p < PHASES.length; p++) {
+				values[p] = new long[count];
+				System.arraycopy(mWindow[p], 0, values[p], 0, count);
+			}
+			for (int i = 0; i < count; i++) {
+				pointsIn += mWindowPointsIn[i];
+				pointsDrawn += mWindowPointsDrawn[i];
+			}
+		}
+		long[] percentiles = new long[3 * PHASES.length];
+		for (int p = 0; p < PHASES.length; p++) {
+			Arrays.sort(values[p]);
+			percentiles[3 * p] = percentile(values[p], 50);
+			percentiles[3 * p + 1] = percentile(values[p], 95);
+			percentiles[3 * p + 2] = percentile(values[p], 99);
+		}
+		return new Snapshot(count, percentiles, pointsIn, pointsDrawn);
+	}
+
+	/**
+	 * nearest rank
+	 */
+	private static long percentile(long[] sorted, int percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (sorted.length * percent + 99) / 100;
+		return sorted[Math.max(rank, 1) - 1];
+	}
+
+	private static double ratio(long drawn, long in) {
+		return in > 0 ? (double) drawn / in : 1;
+	}
+}
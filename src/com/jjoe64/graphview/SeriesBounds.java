@@ -0,0 +1,160 @@
+package com.jjoe64.graphview;
+
+import java.util.List;
+
+import com.jjoe64.graphview.GraphViewSeries.Data;
+
+/**
+ * combined bounds of the visible series of a graph. the bounds are only
+ * recomputed when a series was added, removed, shown or hidden, or when the
+ * version of its data changed, otherwise checking them costs one volatile
+ * read per series and no lock. the y bounds inside the viewport are cached
+ * the same way, and are also recomputed when the viewport moved. used on the
+ * UI thread only.
+ */
+final class SeriesBounds {
+	private GraphViewSeries[] mSeries = new GraphViewSeries[0];
+	private int[] mVersions = new int[0];
+	private boolean[] mVisible = new boolean[0];
+	/** -1 until the first update */
+	private int mCount = -1;
+	private double mMinX, mMaxX, mMinY, mMaxY;
+	private int mRecomputeCount;
+
+	/** mRecomputeCount the viewport bounds were computed at, -1 for none */
+	private int mViewportKey = -1;
+	private double mViewportStart, mViewportSize;
+	private boolean mViewportHasData;
+	private double mViewportMinY, mViewportMaxY;
+	/** helpers to avoid 'new' while computing the viewport bounds */
+	private final int[] mRange = new int[2];
+	private final double[] mMinMax = new double[2];
+
+	/**
+	 * @return true if the bounds were recomputed
+	 */
+	boolean update(List<GraphViewSeries> series) {
+		int count = series.size();
+		if (count == mCount) {
+			boolean current = true;
+			for (int i = 0; i < count; i++) {
+				GraphViewSeries s = series.get(i);
+				if (s != mSeries[i] || s.isVisible() != mVisible[i] || s.getVersion() != mVersions[i]) {
+					current = false;
+					break;
+				}
+			}
+			if (current) {
+				return false;
+			}
+		}
+		recompute(series);
+		return true;
+	}
+
+	private void recompute(List<GraphViewSeries> series) {
+		int count = series.size();
+		if (mSeries.length < count) {
+			mSeries = new GraphViewSeries[count];
+			mVersions = new int[count];
+			mVisible = new boolean[count];
+		}
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		boolean anyVisible = false;
+		for (int i = 0; i < count; i++) {
+			GraphViewSeries s = series.get(i);
+			// version and bounds of the same snapshot
+			Data data = s.data();
+			boolean visible = s.isVisible();
+			mSeries[i] = s;
+			mVersions[i] = data.version;
+			mVisible[i] = visible;
+			if (visible) {
+				anyVisible = true;
+				minX = Math.min(minX, data.minX);
+				maxX = Math.max(maxX, data.maxX);
+				minY = Math.min(minY, data.minY);
+				maxY = Math.max(maxY, data.maxY);
+			}
+		}
+		for (int i = count; i < mSeries.length; i++) {
+			mSeries[i] = null;
+		}
+		if (!anyVisible) {
+			minX = GraphViewSeries.DEFAULT_MIN_X;
+			maxX = GraphViewSeries.DEFAULT_MAX_X;
+			minY = GraphViewSeries.DEFAULT_MIN_Y;
+			maxY = GraphViewSeries.DEFAULT_MAX_Y;
+		}
+		mMinX = minX;
+		mMaxX = maxX;
+		mMinY = minY;
+		mMaxY = maxY;
+		mCount = count;
+		mRecomputeCount++;
+	}
+
+	/**
+	 * updates the smallest and largest y value of the visible series inside
+	 * start..start+size
+	 * 
+	 * @return false if there are no values inside the viewport
+	 */
+	boolean updateViewport(List<GraphViewSeries> series, double start, double size) {
+		update(series);
+		if (mViewportKey == mRecomputeCount && start == mViewportStart && size == mViewportSize) {
+			return mViewportHasData;
+		}
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < series.size(); i++) {
+			GraphViewSeries s = series.get(i);
+			if (s.isVisible() && s.findRange(start, size, mRange)) {
+				s.getMinMaxY(mRange[0], mRange[1], mMinMax);
+				minY = Math.min(minY, mMinMax[0]);
+				maxY = Math.max(maxY, mMinMax[1]);
+			}
+		}
+		mViewportKey = mRecomputeCount;
+		mViewportStart = start;
+		mViewportSize = size;
+		mViewportHasData = minY <= maxY;
+		mViewportMinY = minY;
+		mViewportMaxY = maxY;
+		return mViewportHasData;
+	}
+
+	double getMinX() {
+		return mMinX;
+	}
+
+	double getMaxX() {
+		return mMaxX;
+	}
+
+	double getMinY() {
+		return mMinY;
+	}
+
+	double getMaxY() {
+		return mMaxY;
+	}
+
+	double getViewportMinY() {
+		return mViewportMinY;
+	}
+
+	double getViewportMaxY() {
+		return mViewportMaxY;
+	}
+
+	/**
+	 * @return how often the bounds were recomputed
+	 */
+	int getRecomputeCount() {
+		return mRecomputeCount;
+	}
+}
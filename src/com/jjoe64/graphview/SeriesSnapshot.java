@@ -0,0 +1,247 @@
+package com.jjoe64.graphview;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jjoe64.graphview.GraphViewSeries.GraphViewData;
+
+/**
+ * compact binary format to save and restore a series, e.g. instead of
+ * rebuilding it from a database on every Activity restart. all numbers are
+ * big-endian:
+ *
+ * <pre>
+ * int     magic 'GVSS'
+ * int     format version, 1
+ * int     flags, bit 0: x values sorted ascending
+ * boolean has description, followed by the description as modified UTF-8
+ * int     color
+ * double  minX, maxX, minY, maxY
+ * int     number of data points
+ * blocks of up to 4096 data points until all are written:
+ *   int   number of data points in the block
+ *   int   number of bytes that follow
+ *   x     per data point the delta of delta of the x value, see below
+ *   y     per data point the y value as double
+ * </pre>
+ *
+ * the x values are mapped to longs with the same order and compared to the
+ * previous x value. the change of that difference is written as zigzag
+ * varint. this is lossless, and evenly spaced timestamps take one byte.
+ *
+ * a sorted snapshot is loaded block by block straight into the primitive
+ * storage of a new series, without a sort pass and without objects per data
+ * point.
+ */
+public final class SeriesSnapshot {
+	private static final int MAGIC = 0x47565353;
+	private static final int FORMAT_VERSION = 1;
+	private static final int FLAG_SORTED = 1;
+	private static final int BLOCK_SIZE = 4096;
+	/** 10 bytes of the longest varint + 8 bytes y per data point */
+	private static final int MAX_BLOCK_BYTES = BLOCK_SIZE * 18;
+	/**
+	 * data points reserved up front, the rest grows with the decoded blocks.
+	 * the size in the header is not trusted with more memory than that.
+	 */
+	private static final int MAX_RESERVE = 64 * BLOCK_SIZE;
+
+	private SeriesSnapshot() {
+	}
+
+	/**
+	 * writes the data the series has when this is called, appends from other
+	 * threads are not included. the stream is not closed.
+	 */
+	public static void write(GraphViewSeries series, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		series.pin();
+		try {
+			int size = series.size();
+			data.writeInt(MAGIC);
+			data.writeInt(FORMAT_VERSION);
+			data.writeInt(FLAG_SORTED);
+			data.writeBoolean(series.description != null);
+			if (series.description != null) {
+				data.writeUTF(series.description);
+			}
+			data.writeInt(series.color);
+			data.writeDouble(series.getMinX());
+			data.writeDouble(series.getMaxX());
+			data.writeDouble(series.getMinY());
+			data.writeDouble(series.getMaxY());
+			data.writeInt(size);
+
+			byte[] block = new byte[MAX_BLOCK_BYTES];
+			long previous = 0;
+			long previousDelta = 0;
+			for (int start = 0; start < size; start += BLOCK_SIZE) {
+				int count = Math.min(BLOCK_SIZE, size - start);
+				int length = 0;
+				for (int i = start; i < start + count; i++) {
+					long bits = sortableBits(series.getX(i));
+					long delta = bits - previous;
+					length = writeVarint(block, length, zigzag(delta - previousDelta));
+					previous = bits;
+					previousDelta = delta;
+				}
+				for (int i = start; i < start + count; i++) {
+					length = writeLong(block, length, Double.doubleToRawLongBits(series.getY(i)));
+				}
+				data.writeInt(count);
+				data.writeInt(length);
+				data.write(block, 0, length);
+			}
+		} finally {
+			series.unpin();
+		}
+		data.flush();
+	}
+
+	/**
+	 * reads a snapshot written by {@link #write(GraphViewSeries, OutputStream)}
+	 * or by other tools. the stream is not closed.
+	 *
+	 * @throws IOException
+	 *             if the stream is not a snapshot of a supported version, is
+	 *             truncated, the x values of a sorted snapshot are not
+	 *             ascending, or the data does not match the bounds of the
+	 *             header
+	 */
+	public static GraphViewSeries read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("not a series snapshot");
+		}
+		int version = data.readInt();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("unsupported series snapshot version " + version);
+		}
+		int flags = data.readInt();
+		String description = data.readBoolean() ? data.readUTF() : null;
+		int color = data.readInt();
+		double minX = data.readDouble();
+		double maxX = data.readDouble();
+		double minY = data.readDouble();
+		double maxY = data.readDouble();
+		int size = data.readInt();
+		if (size < 0) {
+			throw new IOException("corrupt series snapshot, size " + size);
+		}
+
+		boolean sorted = (flags & FLAG_SORTED) != 0;
+		GraphViewSeries series = new GraphViewSeries(description, color, new ArrayList<GraphViewData>(0));
+		List<GraphViewData> unsorted = sorted ? null : new ArrayList<GraphViewData>(Math.min(size, MAX_RESERVE));
+		if (sorted) {
+			series.reserve(Math.min(size, MAX_RESERVE));
+		}
+		byte[] block = new byte[MAX_BLOCK_BYTES];
+		double[] xs = new double[Math.min(size, BLOCK_SIZE)];
+		double[] ys = new double[xs.length];
+		long previous = 0;
+		long previousDelta = 0;
+		double lastX = Double.NEGATIVE_INFINITY;
+		int read = 0;
+		while (read < size) {
+			int count = data.readInt();
+			int length = data.readInt();
+			if (count <= 0 || count > BLOCK_SIZE || read + count > size || length < 0 || length > MAX_BLOCK_BYTES) {
+				throw new IOException("corrupt series snapshot, block of " + count + " data points and " + length + " bytes");
+			}
+			data.readFully(block, 0, length);
+			int position = 0;
+			for (int i = 0; i < count; i++) {
+				long value = 0;
+				int shift = 0;
+				byte b;
+				do {
+					if (position >= length) {
+						throw new IOException("corrupt series snapshot, block ends inside an x value");
+					}
+					b = block[position++];
+					value |= (long) (b & 0x7f) << shift;
+					shift += 7;
+				} while (b < 0);
+				long delta = previousDelta + ((value >>> 1) ^ -(value & 1));
+				previous += delta;
+				previousDelta = delta;
+				xs[i] = fromSortableBits(previous);
+				if (sorted) {
+					// a damaged varint or a wrong flag, addAll would throw
+					if (xs[i] < lastX) {
+						throw new IOException("corrupt series snapshot, x values not ascending");
+					}
+					lastX = xs[i];
+				}
+			}
+			if (position + 8 * count != length) {
+				throw new IOException("corrupt series snapshot, block has " + length + " bytes");
+			}
+			for (int i = 0; i < count; i++) {
+				ys[i] = Double.longBitsToDouble(readLong(block, position));
+				position += 8;
+			}
+			if (sorted) {
+				series.addAll(xs, ys, 0, count);
+			} else {
+				for (int i = 0; i < count; i++) {
+					unsorted.add(new GraphViewData(xs[i], ys[i]));
+				}
+			}
+			read += count;
+		}
+		if (!sorted) {
+			series = new GraphViewSeries(description, color, unsorted);
+		}
+		if (Double.compare(series.getMinX(), minX) != 0 || Double.compare(series.getMaxX(), maxX) != 0 || Double.compare(series.getMinY(), minY) != 0
+				|| Double.compare(series.getMaxY(), maxY) != 0) {
+			throw new IOException("corrupt series snapshot, the data does not match the bounds");
+		}
+		return series;
+	}
+
+	/**
+	 * maps a double to a long with the same order, negative values included
+	 */
+	private static long sortableBits(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		return bits ^ ((bits >> 63) & 0x7fffffffffffffffL);
+	}
+
+	private static double fromSortableBits(long sortable) {
+		return Double.longBitsToDouble(sortable ^ ((sortable >> 63) & 0x7fffffffffffffffL));
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static int writeVarint(byte[] buffer, int position, long value) {
+		while ((value & ~0x7fL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+		return position;
+	}
+
+	private static int writeLong(byte[] buffer, int position, long value) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			buffer[position++] = (byte) (value >>> shift);
+		}
+		return position;
+	}
+
+	private static long readLong(byte[] buffer, int position) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (buffer[position + i] & 0xff);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,430 @@
+package com.jjoe64.graphview;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * renders the plot area as tiles of a fixed x range into bitmaps. scrolling
+ * only blits the visible tiles. the tiles are kept in a LRU cache with a byte
+ * budget.
+ *
+ * while a fling is running, the tiles between the viewport and the end of the
+ * fling are rendered ahead by a worker thread. the tiles, the cache key and
+ * the prefetch queue are guarded by a private lock that is only held to copy
+ * or swap state. the worker never takes the GraphView lock: it copies the
+ * cache key, pins the series and draws a tile into its own bitmap, then
+ * publishes the tile if no tile was dropped in the meantime. only the
+ * drawSeries calls take the draw lock of the GraphView, because subclasses
+ * draw with the paint and helper objects of the view. onDraw waits for at
+ * most one tile.
+ *
+ * a tile is dropped when data is added or removed in its x range. a change of
+ * the scale, the y axis or the visible series drops all tiles. draw is called
+ * by onDraw, the other methods can be called from any thread.
+ */
+final class TileCache {
+	/** width of a tile in pixels */
+	static final int TILE_WIDTH = 256;
+	/** pixels a series may draw outside of its x range, for circles and wide lines */
+	private static final float OVERDRAW = 8;
+
+	private static final class Tile {
+		Bitmap bitmap;
+		int bytes;
+	}
+
+	/** copy of the cache key a tile is rendered with */
+	private static final class RenderState {
+		double scale;
+		double minY;
+		double diffY;
+		int height;
+		float border;
+		GraphViewSeries[] series = new GraphViewSeries[0];
+		int seriesCount;
+		/** mGeneration when the state was copied */
+		int generation;
+		final int[] range = new int[2];
+	}
+
+	/** state of a series the tiles were rendered from */
+	private static final class SeriesState {
+		int version;
+		int rewriteCount;
+		int size;
+		double firstX;
+		double lastX;
+	}
+
+	private final GraphView mGraphView;
+	/** guards everything below */
+	private final Object mLock = new Object();
+	private int mBudget;
+	private int mBytes;
+	/** access ordered, iteration starts with the least recently used tile */
+	private final LinkedHashMap<Long, Tile> mTiles = new LinkedHashMap<Long, Tile>(16, 0.75f, true);
+
+	/** cache key */
+	private boolean mValid;
+	private double mScale;
+	private double mMinY;
+	private double mDiffY;
+	private int mHeight;
+	private float mBorder;
+	private final List<GraphViewSeries> mSeries = new ArrayList<GraphViewSeries>();
+	private final WeakHashMap<GraphViewSeries, SeriesState> mStates = new WeakHashMap<GraphViewSeries, SeriesState>();
+	private int mVisibleTiles;
+	/** incremented when tiles are dropped, tiles rendered before are stale */
+	private int mGeneration;
+
+	/** tiles the worker renders ahead, nearest first */
+	private final List<Long> mPrefetch = new ArrayList<Long>();
+	private Thread mThread;
+	/** used by draw on the UI thread */
+	private final RenderState mDrawState = new RenderState();
+
+	TileCache(GraphView graphView, int budget) {
+		mGraphView = graphView;
+		mBudget = budget;
+	}
+
+	void setBudget(int budget) {
+		synchronized (mLock) {
+			mBudget = budget;
+			trim();
+		}
+	}
+
+	int getBudget() {
+		synchronized (mLock) {
+			return mBudget;
+		}
+	}
+
+	/**
+	 * draws the viewport from the tiles, missing tiles are rendered first.
+	 * called by onDraw with the draw lock held.
+	 */
+	void draw(Canvas canvas, List<GraphViewSeries> graphSeries, double viewportStart, double viewportSize, float graphwidth, float height, float border, double minY, double diffY,
+			float horstart) {
+		double scale = graphwidth / viewportSize;
+		double span = TILE_WIDTH / scale;
+		long first = (long) Math.floor(viewportStart / span);
+		long last = (long) Math.floor((viewportStart + viewportSize) / span);
+		synchronized (mLock) {
+			validate(graphSeries, scale, minY, diffY, (int) height, border);
+			mVisibleTiles = (int) (last - first + 1);
+			copyState(mDrawState);
+		}
+		for (long index = first; index <= last; index++) {
+			Tile tile;
+			synchronized (mLock) {
+				tile = mTiles.get(index);
+			}
+			if (tile == null) {
+				tile = publish(index, render(index, mDrawState), mDrawState);
+			}
+			canvas.drawBitmap(tile.bitmap, (float) ((index * span - viewportStart) * scale) + horstart, 0, null);
+		}
+		synchronized (mLock) {
+			trim();
+		}
+	}
+
+	/**
+	 * renders the tiles between the viewport and the viewport at the end of a
+	 * fling in the background. replaces the previous request.
+	 */
+	void prefetch(double viewportStart, double viewportSize, double finalViewportStart) {
+		synchronized (mLock) {
+			mPrefetch.clear();
+			if (!mValid) {
+				return;
+			}
+			double span = TILE_WIDTH / mScale;
+			int tileBytes = TILE_WIDTH * 4 * mHeight;
+			int max = tileBytes > 0 ? mBudget / tileBytes - mVisibleTiles : 0;
+			if (finalViewportStart > viewportStart) {
+				long from = (long) Math.floor((viewportStart + viewportSize) / span) + 1;
+				long to = (long) Math.floor((finalViewportStart + viewportSize) / span);
+				for (long index = from; index <= to && mPrefetch.size() < max; index++) {
+					addPrefetch(index);
+				}
+			} else if (finalViewportStart < viewportStart) {
+				long from = (long) Math.floor(viewportStart / span) - 1;
+				long to = (long) Math.floor(finalViewportStart / span);
+				for (long index = from; index >= to && mPrefetch.size() < max; index--) {
+					addPrefetch(index);
+				}
+			}
+			if (!mPrefetch.isEmpty()) {
+				if (mThread == null) {
+					mThread = new Thread(new Worker(), "GraphView tiles");
+					mThread.setDaemon(true);
+					mThread.start();
+				}
+				mLock.notifyAll();
+			}
+		}
+	}
+
+	private void addPrefetch(long index) {
+		if (!mTiles.containsKey(index)) {
+			mPrefetch.add(index);
+		}
+	}
+
+	void stop() {
+		synchronized (mLock) {
+			mPrefetch.clear();
+			if (mThread != null) {
+				mThread.interrupt();
+				mThread = null;
+			}
+		}
+	}
+
+	void clear() {
+		synchronized (mLock) {
+			dropAll();
+		}
+	}
+
+	private void dropAll() {
+		mTiles.clear();
+		mBytes = 0;
+		mPrefetch.clear();
+		mValid = false;
+		mGeneration++;
+	}
+
+	private void copyState(RenderState state) {
+		state.scale = mScale;
+		state.minY = mMinY;
+		state.diffY = mDiffY;
+		state.height = mHeight;
+		state.border = mBorder;
+		int count = mSeries.size();
+		if (state.series.length < count) {
+			state.series = new GraphViewSeries[count];
+		}
+		for (int i = 0; i < count; i++) {
+			state.series[i] = mSeries.get(i);
+		}
+		for (int i = count; i < state.seriesCount; i++) {
+			state.series[i] = null;
+		}
+		state.seriesCount = count;
+		state.generation = mGeneration;
+	}
+
+	/**
+	 * checks the cache key and drops the tiles of changed data. called with
+	 * mLock held.
+	 */
+	private void validate(List<GraphViewSeries> graphSeries, double scale, double minY, double diffY, int height, float border) {
+		boolean sameSeries = true;
+		int count = 0;
+		for (int i = 0; i < graphSeries.size(); i++) {
+			GraphViewSeries series = graphSeries.get(i);
+			if (series.isVisible()) {
+				if (count >= mSeries.size() || mSeries.get(count) != series) {
+					sameSeries = false;
+				}
+				count++;
+			}
+		}
+		if (!mValid || !sameSeries || count != mSeries.size() || scale != mScale || minY != mMinY || diffY != mDiffY || height != mHeight || border != mBorder) {
+			dropAll();
+			mValid = true;
+			mScale = scale;
+			mMinY = minY;
+			mDiffY = diffY;
+			mHeight = height;
+			mBorder = border;
+			mSeries.clear();
+			mStates.clear();
+			for (int i = 0; i < graphSeries.size(); i++) {
+				GraphViewSeries series = graphSeries.get(i);
+				if (series.isVisible()) {
+					mSeries.add(series);
+					SeriesState state = new SeriesState();
+					store(state, series);
+					mStates.put(series, state);
+				}
+			}
+			return;
+		}
+
+		for (int i = 0; i < mSeries.size(); i++) {
+			GraphViewSeries series = mSeries.get(i);
+			SeriesState state = mStates.get(series);
+			if (state.version == series.getVersion()) {
+				continue;
+			}
+			int size = series.size();
+			if (state.rewriteCount != series.getRewriteCount() || size == 0 || state.size == 0) {
+				dropAll();
+				mValid = true;
+				for (int j = 0; j < mSeries.size(); j++) {
+					store(mStates.get(mSeries.get(j)), mSeries.get(j));
+				}
+				return;
+			}
+			// data was only added or removed at the ends
+			double firstX = series.getX(0);
+			double lastX = series.getX(size - 1);
+			if (firstX != state.firstX) {
+				invalidate(Math.min(firstX, state.firstX), Math.max(firstX, state.firstX));
+			}
+			if (lastX != state.lastX || (size != state.size && firstX == state.firstX)) {
+				invalidate(Math.min(lastX, state.lastX), Math.max(lastX, state.lastX));
+			}
+			store(state, series);
+		}
+	}
+
+	private static void store(SeriesState state, GraphViewSeries series) {
+		state.version = series.getVersion();
+		state.rewriteCount = series.getRewriteCount();
+		state.size = series.size();
+		if (state.size > 0) {
+			state.firstX = series.getX(0);
+			state.lastX = series.getX(state.size - 1);
+		}
+	}
+
+	/**
+	 * drops the tiles that show a part of fromX..toX
+	 */
+	private void invalidate(double fromX, double toX) {
+		double span = TILE_WIDTH / mScale;
+		double margin = OVERDRAW / mScale;
+		long first = (long) Math.floor((fromX - margin) / span);
+		long last = (long) Math.floor((toX + margin) / span);
+		Iterator<Map.Entry<Long, Tile>> it = mTiles.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long, Tile> entry = it.next();
+			long index = entry.getKey();
+			if (index >= first && index <= last) {
+				mBytes -= entry.getValue().bytes;
+				it.remove();
+			}
+		}
+		// a tile that is being rendered may show the old data
+		mGeneration++;
+	}
+
+	/**
+	 * draws a tile into a new bitmap, without mLock. takes the draw lock of
+	 * the GraphView for the drawSeries calls and restores its paint.
+	 */
+	private Tile render(long index, RenderState state) {
+		int height = Math.max(state.height, 1);
+		Tile tile = new Tile();
+		tile.bitmap = Bitmap.createBitmap(TILE_WIDTH, height, Bitmap.Config.ARGB_8888);
+		tile.bytes = tile.bitmap.getRowBytes() * tile.bitmap.getHeight();
+		Canvas canvas = new Canvas(tile.bitmap);
+
+		double span = TILE_WIDTH / state.scale;
+		double start = index * span;
+		float graphheight = state.height - 2 * state.border;
+		for (int i = 0; i < state.seriesCount; i++) {
+			state.series[i].pin();
+		}
+		try {
+			synchronized (mGraphView.mDrawLock) {
+				Paint paint = mGraphView.paint;
+				Paint saved = new Paint(paint);
+				paint.setStrokeCap(Paint.Cap.ROUND);
+				paint.setStrokeWidth(3);
+				for (int i = 0; i < state.seriesCount; i++) {
+					GraphViewSeries series = state.series[i];
+					if (series.findRange(start, span, state.range) && state.range[1] > state.range[0]) {
+						paint.setColor(series.color);
+						mGraphView.drawSeries(canvas, series.color, series, state.range[0], state.range[1], TILE_WIDTH, graphheight, state.border, start, state.minY, span,
+								state.diffY, 0);
+					}
+				}
+				paint.set(saved);
+			}
+		} finally {
+			for (int i = 0; i < state.seriesCount; i++) {
+				state.series[i].unpin();
+			}
+		}
+		return tile;
+	}
+
+	/**
+	 * adds a rendered tile, unless tiles were dropped since its state was
+	 * copied or the tile was rendered by the other thread
+	 * 
+	 * @return the cached tile, or the given one if it is stale
+	 */
+	private Tile publish(long index, Tile tile, RenderState state) {
+		synchronized (mLock) {
+			if (state.generation != mGeneration) {
+				return tile;
+			}
+			Tile cached = mTiles.get(index);
+			if (cached != null) {
+				return cached;
+			}
+			mTiles.put(index, tile);
+			mBytes += tile.bytes;
+			trim();
+			return tile;
+		}
+	}
+
+	/**
+	 * drops least recently used tiles until the budget is met, but keeps
+	 * enough for the viewport. called with mLock held.
+	 */
+	private void trim() {
+		Iterator<Tile> it = mTiles.values().iterator();
+		while (mBytes > mBudget && mTiles.size() > mVisibleTiles && it.hasNext()) {
+			mBytes -= it.next().bytes;
+			it.remove();
+		}
+	}
+
+	private final class Worker implements Runnable {
+		private final RenderState mState = new RenderState();
+
+		@Override
+		public void run() {
+			Thread thread = Thread.currentThread();
+			while (true) {
+				long index;
+				synchronized (mLock) {
+					while (mThread == thread && (mPrefetch.isEmpty() || !mValid)) {
+						try {
+							mLock.wait();
+						} catch (InterruptedException e) {
+							// stop() clears mThread, checked by the loop
+						}
+					}
+					if (mThread != thread) {
+						return;
+					}
+					index = mPrefetch.remove(0);
+					if (mTiles.containsKey(index)) {
+						continue;
+					}
+					copyState(mState);
+				}
+				publish(index, render(index, mState), mState);
+			}
+		}
+	}
+}
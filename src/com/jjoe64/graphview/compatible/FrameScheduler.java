@@ -0,0 +1,101 @@
+package com.jjoe64.graphview.compatible;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * runs a callback on the main thread once per display frame, no matter how
+ * often it was scheduled in between. on API 16+ the callback is aligned to
+ * vsync by the Choreographer, older versions post it to the main thread at
+ * most every {@link #FRAME_MILLIS}.
+ *
+ * {@link #schedule()} can be called from any thread. the scheduler has to be
+ * created on the main thread.
+ */
+public class FrameScheduler {
+	/** frame interval of the fallback */
+	public static final long FRAME_MILLIS = 16;
+
+	/** posts the frame callback, implemented by {@link RealFrameScheduler} */
+	interface Poster {
+		void post();
+		void cancel();
+	}
+
+	private final Runnable mFrame;
+	private final AtomicBoolean mScheduled = new AtomicBoolean();
+	private Poster mPoster;
+	private final Handler mHandler;
+	private long mLastFrame;
+	private final Runnable mHandlerFrame = new Runnable() {
+		@Override
+		public void run() {
+			mLastFrame = SystemClock.uptimeMillis();
+			doFrame();
+		}
+	};
+
+	/**
+	 * @param frame
+	 *            called on the main thread
+	 */
+	public FrameScheduler(Runnable frame) {
+		mFrame = frame;
+		mHandler = new Handler(Looper.getMainLooper());
+		try {
+			// check if class is available
+			Class.forName("android.view.Choreographer");
+
+			// the constructor is only looked up once, posting is a plain call
+			Class<?> classRealFrameScheduler = Class.forName("com.jjoe64.graphview.compatible.RealFrameScheduler");
+			mPoster = (Poster) classRealFrameScheduler.getConstructor(FrameScheduler.class).newInstance(this);
+		} catch (Exception e) {
+			// not available, use the handler
+			mPoster = null;
+		} catch (LinkageError e) {
+			mPoster = null;
+		}
+	}
+
+	/**
+	 * requests a call of the callback in the next frame. returns false if a
+	 * call is already pending, the request is then coalesced into it.
+	 */
+	public boolean schedule() {
+		if (!mScheduled.compareAndSet(false, true)) {
+			return false;
+		}
+		if (mPoster != null) {
+			mPoster.post();
+		} else {
+			long delay = mLastFrame + FRAME_MILLIS - SystemClock.uptimeMillis();
+			mHandler.postDelayed(mHandlerFrame, Math.max(delay, 0));
+		}
+		return true;
+	}
+
+	/**
+	 * drops a pending call
+	 */
+	public void cancel() {
+		if (mPoster != null) {
+			mPoster.cancel();
+		} else {
+			mHandler.removeCallbacks(mHandlerFrame);
+		}
+		mScheduled.set(false);
+	}
+
+	public boolean isScheduled() {
+		return mScheduled.get();
+	}
+
+	void doFrame() {
+		// cleared first, a request made while the callback runs gets its own frame
+		mScheduled.set(false);
+		mFrame.run();
+	}
+}
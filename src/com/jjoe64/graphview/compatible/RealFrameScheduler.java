@@ -0,0 +1,33 @@
+package com.jjoe64.graphview.compatible;
+
+import android.view.Choreographer;
+
+/**
+ * posts the frame callback of a {@link FrameScheduler} to the Choreographer.
+ * only loaded on API 16+.
+ */
+public class RealFrameScheduler implements FrameScheduler.Poster, Choreographer.FrameCallback {
+	private final FrameScheduler mScheduler;
+	/** postFrameCallback is thread safe, but getInstance is bound to the calling looper */
+	private final Choreographer mChoreographer;
+
+	public RealFrameScheduler(FrameScheduler scheduler) {
+		mScheduler = scheduler;
+		mChoreographer = Choreographer.getInstance();
+	}
+
+	@Override
+	public void post() {
+		mChoreographer.postFrameCallback(this);
+	}
+
+	@Override
+	public void cancel() {
+		mChoreographer.removeFrameCallback(this);
+	}
+
+	@Override
+	public void doFrame(long frameTimeNanos) {
+		mScheduler.doFrame();
+	}
+}
@@ -8,7 +8,7 @@ import android.view.ScaleGestureDetector;
  * Licensed under the GNU Lesser General Public License (LGPL)
  * http://www.gnu.org/licenses/lgpl.html
  */
-public class RealScaleGestureDetector extends ScaleGestureDetector {
+public class RealScaleGestureDetector extends ScaleGestureDetector implements com.jjoe64.graphview.compatible.ScaleGestureDetector.Detector {
 	public RealScaleGestureDetector(Context context, final com.jjoe64.graphview.compatible.ScaleGestureDetector fakeScaleGestureDetector, final com.jjoe64.graphview.compatible.ScaleGestureDetector.SimpleOnScaleGestureListener fakeListener) {
 		super(context, new android.view.ScaleGestureDetector.SimpleOnScaleGestureListener() {
 			@Override
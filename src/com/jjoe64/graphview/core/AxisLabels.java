@@ -0,0 +1,118 @@
+package com.jjoe64.graphview.core;
+
+import java.util.TimeZone;
+
+/**
+ * the ticks of one axis and their labels. the ticks are recomputed for every
+ * frame, which is cheap, the labels come from a {@link LabelCache}, so only
+ * ticks that newly scroll into view are formatted.
+ */
+public final class AxisLabels {
+	public interface Formatter {
+		String format(double value);
+	}
+
+	private static final int CACHE_SIZE = 256;
+
+	private final LabelCache mCache = new LabelCache(CACHE_SIZE);
+	private double[] mValues = new double[0];
+	private String[] mLabels = new String[0];
+	private int mCount;
+	private double mMin;
+	private double mMax;
+	private double mStep;
+	/** null if the values are not timestamps */
+	private TimeZone mTimeZone;
+
+	/**
+	 * @param timeZone
+	 *            if not null, the values are timestamps in milliseconds and
+	 *            the ticks are placed at round times of this time zone, see
+	 *            {@link AxisTicks#timeStep(double, int)}
+	 */
+	public void setTimeZone(TimeZone timeZone) {
+		mTimeZone = timeZone;
+	}
+
+	/**
+	 * places the ticks at nice values inside min..max, see
+	 * {@link AxisTicks#niceStep(double, int)}, or at round times if a time
+	 * zone is set
+	 * 
+	 * @param maxIntervals
+	 *            maximal number of intervals between the ticks
+	 * @param format
+	 *            id of the format, labels cached with another id are not
+	 *            used
+	 */
+	public void update(double min, double max, int maxIntervals, int format, Formatter formatter) {
+		if (mValues.length < maxIntervals + 1) {
+			mValues = new double[maxIntervals + 1];
+			mLabels = new String[maxIntervals + 1];
+		}
+		mMin = min;
+		mMax = max;
+		// set before formatting, formatters may read it
+		if (mTimeZone == null) {
+			mStep = AxisTicks.niceStep(max - min, maxIntervals);
+			mCount = AxisTicks.nice(min, max, mStep, mValues);
+		} else {
+			mStep = AxisTicks.timeStep(max - min, maxIntervals);
+			// multiples of the step in local time, so hours and days start
+			// at local midnight
+			double offset = mTimeZone.getOffset((long) min);
+			mCount = AxisTicks.nice(min + offset, max + offset, mStep, mValues);
+			for (int i = 0; i < mCount; i++) {
+				mValues[i] -= offset;
+			}
+		}
+		for (int i = 0; i < mCount; i++) {
+			double value = mValues[i];
+			String label = mCache.get(value, format);
+			if (label == null) {
+				label = formatter.format(value);
+				mCache.put(value, format, label);
+			}
+			mLabels[i] = label;
+		}
+		for (int i = mCount; i < mLabels.length; i++) {
+			mLabels[i] = null;
+		}
+	}
+
+	/**
+	 * @return number of ticks
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return distance of two ticks, 0 if there is at most one tick
+	 */
+	public double getStep() {
+		return mStep;
+	}
+
+	public double getValue(int index) {
+		return mValues[index];
+	}
+
+	public String getLabel(int index) {
+		return mLabels[index];
+	}
+
+	/**
+	 * @param length
+	 *            length of the axis
+	 * @return position of the tick from min, 0..length
+	 */
+	public float getPosition(int index, float length) {
+		double range = mMax - mMin;
+		return range > 0 ? (float) ((mValues[index] - mMin) / range * length) : 0;
+	}
+
+	public LabelCache getCache() {
+		return mCache;
+	}
+}
@@ -0,0 +1,131 @@
+package com.jjoe64.graphview.core;
+
+/**
+ * computes the values the labels of an axis are placed at
+ */
+public final class AxisTicks {
+	private static final int[] NICE_MULTIPLES = { 1, 2, 5 };
+	private static final long SECOND = 1000;
+	private static final long MINUTE = 60 * SECOND;
+	private static final long HOUR = 60 * MINUTE;
+	private static final long DAY = 24 * HOUR;
+	/** steps of a time axis in milliseconds, up to a day */
+	private static final long[] TIME_STEPS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, SECOND, 2 * SECOND, 5 * SECOND, 10 * SECOND, 15 * SECOND, 30 * SECOND, MINUTE,
+			2 * MINUTE, 5 * MINUTE, 10 * MINUTE, 15 * MINUTE, 30 * MINUTE, HOUR, 3 * HOUR, 6 * HOUR, 12 * HOUR, DAY };
+
+	private AxisTicks() {
+	}
+
+	/**
+	 * @param length
+	 *            length of the axis in pixels
+	 * @param labelSpacing
+	 *            minimal distance of two labels in pixels
+	 * @return number of intervals between the labels, at least 1
+	 */
+	public static int intervals(float length, float labelSpacing) {
+		return Math.max((int) (length / labelSpacing), 1);
+	}
+
+	/**
+	 * @param range
+	 *            max - min of the axis
+	 * @param maxIntervals
+	 *            maximal number of intervals between the ticks
+	 * @return the smallest step of 1, 2 or 5 times a power of ten that
+	 *         divides the range into at most maxIntervals intervals, or 0 if
+	 *         the range is empty or not finite
+	 */
+	public static double niceStep(double range, int maxIntervals) {
+		if (!(range > 0) || Double.isInfinite(range)) {
+			return 0;
+		}
+		int intervals = Math.max(maxIntervals, 1);
+		// start one magnitude lower, log10 of the raw step may be rounded up
+		int exponent = (int) Math.floor(Math.log10(range / intervals)) - 1;
+		while (true) {
+			double magnitude = Math.pow(10, exponent);
+			for (int multiple : NICE_MULTIPLES) {
+				double step = multiple * magnitude;
+				if (range / step <= intervals * (1 + 1e-9)) {
+					return step;
+				}
+			}
+			exponent++;
+		}
+	}
+
+	/**
+	 * like {@link #niceStep(double, int)} for an axis of timestamps in
+	 * milliseconds: the steps are whole seconds (1, 2, 5, 10, 15, 30),
+	 * minutes (the same), hours (1, 3, 6, 12) or days (1, 2, 5, 10, ...), so
+	 * the labels fall on round times.
+	 */
+	public static double timeStep(double range, int maxIntervals) {
+		if (!(range > 0) || Double.isInfinite(range)) {
+			return 0;
+		}
+		int intervals = Math.max(maxIntervals, 1);
+		if (range / intervals <= 1) {
+			return niceStep(range, intervals);
+		}
+		for (long step : TIME_STEPS) {
+			if (range / step <= intervals * (1 + 1e-9)) {
+				return step;
+			}
+		}
+		return niceStep(range / DAY, intervals) * DAY;
+	}
+
+	/**
+	 * places ticks at the multiples of step inside min..max. the ticks are
+	 * anchored in data space, while the axis scrolls the same values stay
+	 * ticks and only move.
+	 * 
+	 * @param step
+	 *            see {@link #niceStep(double, int)}, if 0 one tick at min is
+	 *            placed
+	 * @param values
+	 *            receives the ticks, ascending. ticks that do not fit are
+	 *            dropped
+	 * @return number of ticks
+	 */
+	public static int nice(double min, double max, double step, double[] values) {
+		if (values.length == 0 || Double.isNaN(min) || Double.isInfinite(min)) {
+			return 0;
+		}
+		if (step <= 0 || Math.abs(min / step) > 1e15) {
+			// no range, or too few doubles between the ticks
+			values[0] = min;
+			return 1;
+		}
+		// steps below 1 are 1 / an integer, dividing by it gives the double
+		// nearest to the decimal value, e.g. 0.3 instead of 3 * 0.1
+		double inverse = step < 1 ? Math.rint(1 / step) : 0;
+		long first = (long) Math.ceil(min / step);
+		int count = 0;
+		for (long k = first; count < values.length; k++) {
+			double value = inverse > 0 ? k / inverse : k * step;
+			if (value > max) {
+				break;
+			}
+			if (value >= min) {
+				values[count++] = value;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * divides min..max into equal intervals
+	 * 
+	 * @return intervals + 1 values from min to max
+	 */
+	public static double[] linear(double min, double max, int intervals) {
+		double[] values = new double[intervals + 1];
+		for (int i = 0; i <= intervals; i++) {
+			values[i] = min + ((max - min) * i / intervals);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,72 @@
+package com.jjoe64.graphview.core;
+
+/**
+ * bounded memo of formatted axis labels, keyed by the value and an id of the
+ * format. a hash table where a new entry replaces the one in its slot, so
+ * lookups neither allocate nor need a lock, and the labels of the ticks on
+ * screen usually stay cached while the axis scrolls. used by one thread.
+ */
+public final class LabelCache {
+	private final long[] mValues;
+	private final int[] mFormats;
+	private final String[] mLabels;
+	private final int mMask;
+	private int mHits;
+	private int mMisses;
+
+	/**
+	 * @param capacity
+	 *            number of labels, rounded up to a power of two
+	 */
+	public LabelCache(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		mValues = new long[size];
+		mFormats = new int[size];
+		mLabels = new String[size];
+		mMask = size - 1;
+	}
+
+	/**
+	 * @return the label, null if it is not cached
+	 */
+	public String get(double value, int format) {
+		long bits = Double.doubleToLongBits(value);
+		int slot = slot(bits, format);
+		if (mLabels[slot] != null && mValues[slot] == bits && mFormats[slot] == format) {
+			mHits++;
+			return mLabels[slot];
+		}
+		mMisses++;
+		return null;
+	}
+
+	public void put(double value, int format, String label) {
+		long bits = Double.doubleToLongBits(value);
+		int slot = slot(bits, format);
+		mValues[slot] = bits;
+		mFormats[slot] = format;
+		mLabels[slot] = label;
+	}
+
+	public void clear() {
+		for (int i = 0; i < mLabels.length; i++) {
+			mLabels[i] = null;
+		}
+	}
+
+	public int getHitCount() {
+		return mHits;
+	}
+
+	/**
+	 * @return number of lookups that had to format the label
+	 */
+	public int getMissCount() {
+		return mMisses;
+	}
+
+	private int slot(long bits, int format) {
+		long hash = (bits ^ (bits >>> 32) ^ format * 0x9e3779b9L) * 0x9e3779b97f4a7c15L;
+		return (int) (hash >>> 40) & mMask;
+	}
+}
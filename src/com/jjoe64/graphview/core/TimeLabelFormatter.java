@@ -0,0 +1,411 @@
+package com.jjoe64.graphview.core;
+
+import java.text.DateFormat;
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * formats timestamps for axis labels with the precision the tick step needs.
+ * the patterns of the locale's time and date formats are compiled once, a
+ * label is written into a reused char buffer without Calendar or
+ * FieldPosition objects, and the calendar fields of the day are computed once
+ * per day. the output is the same as the one of the given formats: the time
+ * format for {@link Granularity#MINUTE}, the time format with seconds or
+ * milliseconds for the finer granularities, the time format after the short
+ * weekday for {@link Granularity#HOUR}, as hourly labels span several days,
+ * and the date format for {@link Granularity#DAY}.
+ *
+ * patterns with fields other than y M d E a H k K h m s S are passed to the
+ * DateFormat, as are dates before 1583.
+ */
+public final class TimeLabelFormatter {
+	public enum Granularity {
+		MILLISECOND(1), SECOND(1000), MINUTE(60 * 1000), HOUR(60 * 60 * 1000), DAY(24 * 60 * 60 * 1000);
+
+		private static final Granularity[] VALUES = values();
+
+		private final long mMillis;
+
+		Granularity(long millis) {
+			mMillis = millis;
+		}
+
+		/**
+		 * @param step
+		 *            distance of two labels in milliseconds
+		 * @return the coarsest granularity that still tells the labels apart
+		 */
+		public static Granularity forStep(double step) {
+			for (int i = VALUES.length - 1; i > 0; i--) {
+				if (step >= VALUES[i].mMillis) {
+					return VALUES[i];
+				}
+			}
+			return MILLISECOND;
+		}
+	}
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+	/** first day of the gregorian calendar, 1582-10-15, as days since 1970 */
+	private static final long GREGORIAN_CUTOVER_DAY = -141427;
+
+	/**
+	 * a compiled pattern: per element a field letter and its count, or 0 and
+	 * a literal
+	 */
+	private static final class Pattern {
+		final char[] fields;
+		final int[] counts;
+		final String[] literals;
+		/** used for unsupported patterns */
+		final DateFormat fallback;
+
+		Pattern(char[] fields, int[] counts, String[] literals, DateFormat fallback) {
+			this.fields = fields;
+			this.counts = counts;
+			this.literals = literals;
+			this.fallback = fallback;
+		}
+	}
+
+	private final Pattern[] mPatterns = new Pattern[Granularity.values().length];
+	private final TimeZone mTimeZone;
+	private final String[] mAmPm;
+	private final String[] mMonths;
+	private final String[] mShortMonths;
+	private final String[] mWeekdays;
+	private final String[] mShortWeekdays;
+	private final char mZeroDigit;
+	private Granularity mGranularity = Granularity.MINUTE;
+	private char[] mBuffer = new char[32];
+	private final Date mDate = new Date();
+
+	/** the cached day, as utc millis, empty if the offset changes in it */
+	private long mDayStart;
+	private long mDayEnd;
+	private int mDayOffset;
+	private int mYear;
+	private int mMonth;
+	private int mDayOfMonth;
+	/** Calendar.SUNDAY .. Calendar.SATURDAY */
+	private int mDayOfWeek;
+	/** label of the cached day with the DAY granularity */
+	private String mDayLabel;
+
+	/**
+	 * @param timeFormat
+	 *            format of the time of day, e.g. from
+	 *            android.text.format.DateFormat.getTimeFormat(context)
+	 * @param dateFormat
+	 *            format of the date, e.g. from
+	 *            android.text.format.DateFormat.getDateFormat(context)
+	 */
+	public TimeLabelFormatter(DateFormat timeFormat, DateFormat dateFormat) {
+		mTimeZone = timeFormat.getTimeZone();
+		mAmPm = symbols(timeFormat).getAmPmStrings();
+		DateFormatSymbols dateSymbols = symbols(dateFormat);
+		mMonths = dateSymbols.getMonths();
+		mShortMonths = dateSymbols.getShortMonths();
+		mWeekdays = dateSymbols.getWeekdays();
+		mShortWeekdays = dateSymbols.getShortWeekdays();
+		NumberFormat numbers = timeFormat.getNumberFormat();
+		mZeroDigit = numbers instanceof DecimalFormat ? ((DecimalFormat) numbers).getDecimalFormatSymbols().getZeroDigit() : '0';
+
+		mPatterns[Granularity.HOUR.ordinal()] = compile(timeFormat, null, "EEE");
+		mPatterns[Granularity.MINUTE.ordinal()] = compile(timeFormat, null, null);
+		mPatterns[Granularity.SECOND.ordinal()] = compile(timeFormat, "ss", null);
+		mPatterns[Granularity.MILLISECOND.ordinal()] = compile(timeFormat, "ss.SSS", null);
+		mPatterns[Granularity.DAY.ordinal()] = dateFormat.getTimeZone().equals(mTimeZone) ? compile(dateFormat, null, null) : new Pattern(null, null, null, dateFormat);
+	}
+
+	private static DateFormatSymbols symbols(DateFormat format) {
+		return format instanceof SimpleDateFormat ? ((SimpleDateFormat) format).getDateFormatSymbols() : new DateFormatSymbols();
+	}
+
+	public TimeZone getTimeZone() {
+		return mTimeZone;
+	}
+
+	public Granularity getGranularity() {
+		return mGranularity;
+	}
+
+	public void setGranularity(Granularity granularity) {
+		mGranularity = granularity;
+	}
+
+	/**
+	 * @param time
+	 *            milliseconds since 1970
+	 */
+	public String format(long time) {
+		if (mGranularity == Granularity.DAY && mDayLabel != null && time >= mDayStart && time < mDayEnd) {
+			return mDayLabel;
+		}
+		Pattern pattern = mPatterns[mGranularity.ordinal()];
+		String label;
+		if (pattern.fields == null || !updateDay(time)) {
+			mDate.setTime(time);
+			label = pattern.fallback.format(mDate);
+		} else {
+			label = new String(mBuffer, 0, write(pattern, time));
+		}
+		if (mGranularity == Granularity.DAY && time >= mDayStart && time < mDayEnd) {
+			mDayLabel = label;
+		}
+		return label;
+	}
+
+	/**
+	 * computes the calendar fields of the local day of time, unless it is
+	 * the cached day
+	 *
+	 * @return false if the date is not supported
+	 */
+	private boolean updateDay(long time) {
+		if (time >= mDayStart && time < mDayEnd) {
+			return true;
+		}
+		int offset = mTimeZone.getOffset(time);
+		long day = floorDiv(time + offset, MILLIS_PER_DAY);
+		if (day < GREGORIAN_CUTOVER_DAY) {
+			return false;
+		}
+		// days since 0000-03-01, see http://howardhinnant.github.io/date_algorithms.html
+		long days = day + 719468;
+		long era = floorDiv(days, 146097);
+		long dayOfEra = days - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long monthIndex = (5 * dayOfYear + 2) / 153;
+		mDayOfMonth = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+		mMonth = (int) (monthIndex < 10 ? monthIndex + 2 : monthIndex - 10);
+		mYear = (int) (yearOfEra + era * 400 + (mMonth < 2 ? 1 : 0));
+		mDayOfWeek = (int) floorMod(day + 4, 7) + 1;
+		mDayOffset = offset;
+		mDayLabel = null;
+
+		long start = day * MILLIS_PER_DAY - offset;
+		if (mTimeZone.getOffset(start) == offset && mTimeZone.getOffset(start + MILLIS_PER_DAY - 1) == offset) {
+			mDayStart = start;
+			mDayEnd = start + MILLIS_PER_DAY;
+		} else {
+			// a daylight saving change, the offset is looked up per label
+			mDayStart = mDayEnd = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * @return length of the label in mBuffer
+	 */
+	private int write(Pattern pattern, long time) {
+		int offset = time >= mDayStart && time < mDayEnd ? mDayOffset : mTimeZone.getOffset(time);
+		int millisOfDay = (int) floorMod(time + offset, MILLIS_PER_DAY);
+		int hour = millisOfDay / (60 * 60 * 1000);
+		int length = 0;
+		for (int i = 0; i < pattern.fields.length; i++) {
+			int count = pattern.counts[i];
+			switch (pattern.fields[i]) {
+			case 0:
+				length = append(length, pattern.literals[i]);
+				break;
+			case 'y':
+				length = count == 2 ? appendNumber(length, mYear % 100, 2) : appendNumber(length, mYear, count);
+				break;
+			case 'M':
+				if (count >= 4) {
+					length = append(length, mMonths[mMonth]);
+				} else if (count == 3) {
+					length = append(length, mShortMonths[mMonth]);
+				} else {
+					length = appendNumber(length, mMonth + 1, count);
+				}
+				break;
+			case 'd':
+				length = appendNumber(length, mDayOfMonth, count);
+				break;
+			case 'E':
+				length = append(length, count >= 4 ? mWeekdays[mDayOfWeek] : mShortWeekdays[mDayOfWeek]);
+				break;
+			case 'a':
+				length = append(length, mAmPm[hour < 12 ? 0 : 1]);
+				break;
+			case 'H':
+				length = appendNumber(length, hour, count);
+				break;
+			case 'k':
+				length = appendNumber(length, hour == 0 ? 24 : hour, count);
+				break;
+			case 'K':
+				length = appendNumber(length, hour % 12, count);
+				break;
+			case 'h':
+				length = appendNumber(length, hour % 12 == 0 ? 12 : hour % 12, count);
+				break;
+			case 'm':
+				length = appendNumber(length, millisOfDay / (60 * 1000) % 60, count);
+				break;
+			case 's':
+				length = appendNumber(length, millisOfDay / 1000 % 60, count);
+				break;
+			case 'S':
+				length = appendNumber(length, millisOfDay % 1000, count);
+				break;
+			}
+		}
+		return length;
+	}
+
+	private int append(int length, String text) {
+		ensureBuffer(length + text.length());
+		text.getChars(0, text.length(), mBuffer, length);
+		return length + text.length();
+	}
+
+	/**
+	 * @param minDigits
+	 *            the number is padded with zeros
+	 */
+	private int appendNumber(int length, int value, int minDigits) {
+		int digits = 1;
+		for (int rest = value / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		int total = Math.max(digits, minDigits);
+		ensureBuffer(length + total);
+		for (int i = length + total - 1; i >= length; i--) {
+			mBuffer[i] = (char) (mZeroDigit + value % 10);
+			value /= 10;
+		}
+		return length + total;
+	}
+
+	private void ensureBuffer(int length) {
+		if (length > mBuffer.length) {
+			char[] grown = new char[Math.max(length, mBuffer.length * 2)];
+			System.arraycopy(mBuffer, 0, grown, 0, mBuffer.length);
+			mBuffer = grown;
+		}
+	}
+
+	/**
+	 * @param seconds
+	 *            fields inserted after the minutes, separated by ':', null
+	 *            for none
+	 * @param prefix
+	 *            fields put before the pattern, separated by ' ', null for
+	 *            none
+	 */
+	private static Pattern compile(DateFormat format, String seconds, String prefix) {
+		DateFormat fallback = format;
+		if (!(format instanceof SimpleDateFormat)) {
+			return new Pattern(null, null, null, fallback);
+		}
+		String text = ((SimpleDateFormat) format).toPattern();
+		if (seconds != null) {
+			text = insertSeconds(text, seconds);
+		}
+		if (prefix != null) {
+			text = prefix + " " + text;
+		}
+		if (seconds != null || prefix != null) {
+			SimpleDateFormat copy = (SimpleDateFormat) format.clone();
+			copy.applyPattern(text);
+			fallback = copy;
+		}
+
+		int n = text.length();
+		char[] fields = new char[n];
+		int[] counts = new int[n];
+		String[] literals = new String[n];
+		int size = 0;
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < n) {
+			char c = text.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				if ("yMdEaHkKhmsS".indexOf(c) < 0) {
+					return new Pattern(null, null, null, fallback);
+				}
+				int count = 1;
+				while (i + count < n && text.charAt(i + count) == c) {
+					count++;
+				}
+				if (literal.length() > 0) {
+					literals[size++] = literal.toString();
+					literal.setLength(0);
+				}
+				fields[size] = c;
+				counts[size++] = count;
+				i += count;
+			} else if (c == '\'') {
+				if (i + 1 < n && text.charAt(i + 1) == '\'') {
+					literal.append('\'');
+					i += 2;
+				} else {
+					int end = i + 1;
+					while (end < n) {
+						if (text.charAt(end) == '\'') {
+							if (end + 1 < n && text.charAt(end + 1) == '\'') {
+								literal.append('\'');
+								end += 2;
+								continue;
+							}
+							break;
+						}
+						literal.append(text.charAt(end++));
+					}
+					i = end + 1;
+				}
+			} else {
+				literal.append(c);
+				i++;
+			}
+		}
+		if (literal.length() > 0) {
+			literals[size++] = literal.toString();
+		}
+		char[] compiledFields = new char[size];
+		int[] compiledCounts = new int[size];
+		String[] compiledLiterals = new String[size];
+		System.arraycopy(fields, 0, compiledFields, 0, size);
+		System.arraycopy(counts, 0, compiledCounts, 0, size);
+		System.arraycopy(literals, 0, compiledLiterals, 0, size);
+		return new Pattern(compiledFields, compiledCounts, compiledLiterals, fallback);
+	}
+
+	/**
+	 * "h:mm a" becomes "h:mm:ss a", patterns without minutes get the seconds
+	 * appended
+	 */
+	private static String insertSeconds(String pattern, String seconds) {
+		boolean quoted = false;
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (c == '\'') {
+				quoted = !quoted;
+			} else if (!quoted && c == 'm') {
+				int end = i;
+				while (end < pattern.length() && pattern.charAt(end) == 'm') {
+					end++;
+				}
+				return pattern.substring(0, end) + ":" + seconds + pattern.substring(end);
+			}
+		}
+		return pattern + ":" + seconds;
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+	}
+
+	private static long floorMod(long x, long y) {
+		return x - floorDiv(x, y) * y;
+	}
+}
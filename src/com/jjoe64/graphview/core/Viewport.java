@@ -0,0 +1,136 @@
+package com.jjoe64.graphview.core;
+
+/**
+ * the visible x range of a graph and the rules to scroll and zoom it within
+ * the x range of the data. a size of 0 means there is no viewport, all data is
+ * shown.
+ *
+ * plain java like the rest of this package, GraphView only converts pixels
+ * and gestures into calls of this class.
+ */
+public final class Viewport {
+	private double mStart;
+	private double mSize;
+
+	public double getStart() {
+		return mStart;
+	}
+
+	public double getSize() {
+		return mSize;
+	}
+
+	/**
+	 * @return false if all data is shown
+	 */
+	public boolean isSet() {
+		return mSize != 0;
+	}
+
+	public void set(double start, double size) {
+		mStart = start;
+		mSize = size;
+	}
+
+	/**
+	 * changes the size, the start stays
+	 */
+	public void setSize(double size) {
+		mSize = size;
+	}
+
+	/**
+	 * @return true if the viewport shows only a part of minX..maxX
+	 */
+	public boolean canScroll(double minX, double maxX) {
+		return mSize < maxX - minX;
+	}
+
+	/**
+	 * moves the viewport, but not out of minX..maxX
+	 * 
+	 * @param dx
+	 *            distance in x units, positive moves towards larger x
+	 * @return false if the viewport did not move
+	 */
+	public boolean scroll(double dx, double minX, double maxX) {
+		if (mSize == 0) {
+			return false;
+		}
+		if (mStart + mSize >= maxX && dx > 0) {
+			return false;
+		}
+		double start = mStart + dx;
+		// minimal and maximal view limit
+		if (start < minX) {
+			start = minX;
+		} else if (start + mSize > maxX) {
+			start = maxX - mSize;
+		}
+		boolean moved = start != mStart;
+		mStart = start;
+		return moved;
+	}
+
+	/** smallest size factor of one call, so the size stays positive */
+	private static final double MIN_SIZE_FACTOR = 0.01;
+
+	/**
+	 * zooms around the center of the viewport like one scale gesture event:
+	 * the size is multiplied by 2 - factor. zooming out stops at minX..maxX.
+	 * 
+	 * @param factor
+	 *            > 1 zooms in
+	 */
+	public void zoom(double factor, double minX, double maxX) {
+		resize(2 - factor, minX, maxX);
+	}
+
+	/**
+	 * zooms around the center of the viewport. the size factors of several
+	 * calls multiply, so the events of a frame can be folded into one call.
+	 * zooming out stops at minX..maxX.
+	 * 
+	 * @param sizeFactor
+	 *            new size / old size, &lt; 1 zooms in. values below 0.01 are
+	 *            treated as 0.01, the size never becomes 0 or negative.
+	 */
+	public void resize(double sizeFactor, double minX, double maxX) {
+		if (!(sizeFactor >= MIN_SIZE_FACTOR)) {
+			sizeFactor = MIN_SIZE_FACTOR;
+		}
+		final double diff = mSize - mSize * sizeFactor;
+		mStart += diff / 2;
+		mSize -= diff;
+		if (diff < 0) {
+			// start must not be < minX
+			if (mStart < minX) {
+				mStart = minX;
+			}
+
+			// start + size must not be > maxX
+			double overlap = mStart + mSize - maxX;
+			if (overlap > 0) {
+				// scroll left
+				if (mStart - overlap > minX) {
+					mStart -= overlap;
+				} else {
+					// maximal scale
+					mStart = minX;
+					mSize = maxX - mStart;
+				}
+			}
+		}
+	}
+
+	/**
+	 * shows the newest data, but does not start before minX
+	 */
+	public void moveToEnd(double minX, double maxX) {
+		mStart = Math.max(maxX - mSize, minX);
+	}
+
+	public void moveToBeginning(double minX) {
+		mStart = minX;
+	}
+}
@@ -0,0 +1,147 @@
+package com.jjoe64.graphview;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.jjoe64.graphview.GraphViewSeries.GraphViewData;
+
+/**
+ * Checks the data points LTTB and M4 select on small hand made datasets.
+ * Exits with an AssertionError on the first mismatch.
+ *
+ * Runs on a plain JVM, no Android classes needed, see test/run.sh:
+ *
+ * <pre>
+ * sh test/run.sh
+ * </pre>
+ */
+public class DownsamplingTest {
+	public static void main(String[] args) {
+		lttbKeepsAllPointsUpToThreshold();
+		lttbTreatsThresholdBelowThreeAsThree();
+		lttbSelectsLargestTriangles();
+		lttbKeepsFirstAndLast();
+		lttbCachesSelection();
+		m4KeepsFirstMinMaxLastPerColumn();
+		m4ClampsToGraphArea();
+		System.out.println("ok");
+	}
+
+	private static void lttbKeepsAllPointsUpToThreshold() {
+		GraphViewSeries series = series(new double[] { 0, 1, 2, 3, 4, 5, 6, 7 }, new double[] { 3, 1, 4, 1, 5, 9, 2, 6 });
+		int[] indices = new int[8];
+		assertIndices("n == threshold", new int[] { 0, 1, 2, 3, 4, 5, 6, 7 }, indices, LttbDownsampler.downsample(series, 0, 8, 8, indices));
+		assertIndices("n < threshold", new int[] { 0, 1, 2, 3, 4, 5, 6, 7 }, indices, LttbDownsampler.downsample(series, 0, 8, 100, indices));
+		assertIndices("range", new int[] { 2, 3, 4, 5 }, indices, LttbDownsampler.downsample(series, 2, 6, 4, indices));
+		assertIndices("empty range", new int[0], indices, LttbDownsampler.downsample(series, 3, 3, 4, indices));
+	}
+
+	private static void lttbTreatsThresholdBelowThreeAsThree() {
+		GraphViewSeries series = series(new double[] { 0, 1, 2, 3, 4 }, new double[] { 0, 0, 5, 0, 0 });
+		int[] indices = new int[3];
+		assertIndices("threshold 1", new int[] { 0, 2, 4 }, indices, LttbDownsampler.downsample(series, 0, 5, 1, indices));
+	}
+
+	/**
+	 * two buckets of four points: the spike up wins the first bucket, the
+	 * spike down the second one
+	 */
+	private static void lttbSelectsLargestTriangles() {
+		GraphViewSeries series = series(new double[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }, new double[] { 0, 1, 0, 9, 0, 0, -7, 0, 1, 0 });
+		int[] indices = new int[4];
+		assertIndices("spikes", new int[] { 0, 3, 6, 9 }, indices, LttbDownsampler.downsample(series, 0, 10, 4, indices));
+	}
+
+	private static void lttbKeepsFirstAndLast() {
+		Random random = new Random(42);
+		double[] xs = new double[1000];
+		double[] ys = new double[1000];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = i;
+			ys[i] = random.nextGaussian();
+		}
+		GraphViewSeries series = series(xs, ys);
+		int[] indices = new int[50];
+		int count = LttbDownsampler.downsample(series, 100, 900, 50, indices);
+		check("count", count == 50);
+		check("first", indices[0] == 100);
+		check("last", indices[count - 1] == 899);
+		for (int i = 1; i < count; i++) {
+			check("ascending at " + i, indices[i] > indices[i - 1]);
+		}
+	}
+
+	private static void lttbCachesSelection() {
+		GraphViewSeries series = series(new double[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }, new double[] { 0, 1, 0, 9, 0, 0, -7, 0, 1, 0 });
+		LttbDownsampler downsampler = new LttbDownsampler();
+		int[] expected = { 0, 3, 6, 9 };
+		int count = downsampler.downsample(series, 0, 10, 4);
+		assertIndices("first call", expected, downsampler.getIndices(), count);
+		count = downsampler.downsample(series, 0, 10, 4);
+		assertIndices("cached", expected, downsampler.getIndices(), count);
+		series.add(10, 0);
+		count = downsampler.downsample(series, 0, 11, 4);
+		assertIndices("after append", new int[] { 0, 3, 6, 10 }, downsampler.getIndices(), count);
+	}
+
+	/**
+	 * one pixel per x unit, y is flipped: vertex y = 100 - y
+	 */
+	private static void m4KeepsFirstMinMaxLastPerColumn() {
+		GraphViewSeries series = series(new double[] {
+				// column 0: first, min, max and last are different points
+				0, 0.2, 0.4, 0.6, 0.8,
+				// column 1: min equals max
+				1, 1.5,
+				// column 2: a single point
+				2,
+				// column 3: the first point is the minimum, the last one the maximum
+				3, 3.25, 3.5 }, new double[] {
+				5, 1, 9, 3, 4,
+				7, 7,
+				50,
+				2, 2, 8 });
+		M4Aggregator aggregator = new M4Aggregator();
+		int count = aggregator.aggregate(series, 0, 11, 0, 4, 100, 0, 0, 0, 4, 100, 0);
+		assertVertices("columns", new float[] {
+				0, 95, 0.2f, 99, 0.4f, 91, 0.8f, 96,
+				1, 93, 1.5f, 93,
+				2, 50,
+				3, 98, 3.5f, 92 }, aggregator.getVertices(), count);
+	}
+
+	private static void m4ClampsToGraphArea() {
+		GraphViewSeries series = series(new double[] { 0, 1, 2 }, new double[] { -10, 50, 200 });
+		M4Aggregator aggregator = new M4Aggregator();
+		int count = aggregator.aggregate(series, 0, 3, 0, 4, 100, 10, 0, 0, 4, 100, 0);
+		assertVertices("clamped", new float[] { 0, 110, 1, 60, 2, 10 }, aggregator.getVertices(), count);
+	}
+
+	private static GraphViewSeries series(double[] xs, double[] ys) {
+		GraphViewData[] values = new GraphViewData[xs.length];
+		for (int i = 0; i < xs.length; i++) {
+			values[i] = new GraphViewData(xs[i], ys[i]);
+		}
+		return new GraphViewSeries(values);
+	}
+
+	private static void assertIndices(String name, int[] expected, int[] indices, int count) {
+		int[] actual = Arrays.copyOf(indices, count);
+		if (!Arrays.equals(expected, actual)) {
+			throw new AssertionError(name + ": expected " + Arrays.toString(expected) + ", was " + Arrays.toString(actual));
+		}
+	}
+
+	private static void assertVertices(String name, float[] expected, float[] vertices, int count) {
+		float[] actual = Arrays.copyOf(vertices, 2 * count);
+		if (!Arrays.equals(expected, actual)) {
+			throw new AssertionError(name + ": expected " + Arrays.toString(expected) + ", was " + Arrays.toString(actual));
+		}
+	}
+
+	private static void check(String name, boolean condition) {
+		if (!condition) {
+			throw new AssertionError(name);
+		}
+	}
+}
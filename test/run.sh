@@ -0,0 +1,12 @@
+#!/bin/sh
+# compiles the plain JVM tests against the classes of the android build and
+# runs them. run from the project root after building the project, set
+# CLASSES if the build puts its classes somewhere else than bin/classes.
+set -e
+CLASSES=${CLASSES:-bin/classes}
+mkdir -p bin/test
+javac -cp "$CLASSES" -d bin/test $(find test -name '*.java')
+for test in com.jjoe64.graphview.DownsamplingTest; do
+	echo "$test"
+	java -cp "$CLASSES:bin/test" "$test"
+done